@@ -169,6 +169,39 @@ def calculate_and_max_affinity(vectors):
     return similarity
 
 
+def load_sparse_affinity(prefix):
+    """
+    Loads a sparse AND affinity matrix computed by the miner with --all-pairs.
+    The matrix uses the memory-mapped files without copying them, so they do not have to fit in memory.
+    The diagonal is not stored. In calculate_and_max_affinity it is 1 for repos with dependencies
+    and 0 for repos without, so callers which need it have to add it themselves.
+    :param prefix: Output prefix passed to --all-pairs.
+    :return: Repo ids of the rows and the CSR affinity matrix without diagonal.
+    """
+    from scipy import sparse
+
+    with open(prefix + ".ids", 'r') as f:
+        ids = f.read().splitlines()
+    indptr = np.memmap(prefix + ".indptr", dtype='<i8', mode='r')
+    entries = int(indptr[-1])
+
+    # empty files can not be memory-mapped
+    if entries == 0:
+        indices = np.zeros(0, dtype='<i8')
+        values = np.zeros(0, dtype='<f4')
+    else:
+        indices = np.memmap(prefix + ".indices", dtype='<i8', mode='r', shape=(entries,))
+        values = np.memmap(prefix + ".values", dtype='<f4', mode='r', shape=(entries,))
+
+    # assign the arrays directly, the constructor copies them when it picks a smaller index type
+    matrix = sparse.csr_matrix((len(ids), len(ids)), dtype='f4')
+    matrix.data = values
+    matrix.indices = indices
+    matrix.indptr = indptr
+    matrix.has_sorted_indices = True
+    return ids, matrix
+
+
 def calculate_xor_affinity(vectors):
     """
     Calculates XOR affinity matrix of the given vectors.
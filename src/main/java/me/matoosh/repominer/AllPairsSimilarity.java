@@ -0,0 +1,368 @@
+package me.matoosh.repominer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the AND affinity between all pairs of repos without holding the dense matrix in memory.
+ * <p>
+ * Rows are processed in small chunks across all cores, each row is scored against cache-sized column tiles.
+ * Only entries above a threshold (and optionally only the top k per row) are kept.
+ * Finished row chunks are appended in order to a memory-mapped CSR matrix, so an interrupted run
+ * continues from the last committed chunk.
+ * <p>
+ * Files written next to the output prefix:
+ * <ul>
+ *     <li>.ids - repo id of each row, one per line.</li>
+ *     <li>.indptr - n + 1 little-endian longs, row i spans entries indptr[i] to indptr[i + 1].</li>
+ *     <li>.indices - little-endian long column of each entry, the same type as indptr so scipy can use both without copying.</li>
+ *     <li>.values - little-endian float similarity of each entry.</li>
+ *     <li>.progress - number of committed rows.</li>
+ *     <li>.meta - threshold, top k, tile size and vectors hash the matrix was computed with.</li>
+ * </ul>
+ * The diagonal is not stored.
+ */
+public class AllPairsSimilarity {
+    private final int tileSize;
+    private final int rowChunkSize;
+    private final double threshold;
+    private final int topK;
+
+    /**
+     * @param tileSize     Number of columns in a tile.
+     * @param rowChunkSize Number of rows scored by one task, small enough to keep all cores busy.
+     * @param threshold    Minimum similarity of a kept entry, zero entries are never kept.
+     * @param topK         Maximum entries kept per row, 0 to keep all above the threshold.
+     */
+    public AllPairsSimilarity(int tileSize, int rowChunkSize, double threshold, int topK) {
+        this.tileSize = tileSize;
+        this.rowChunkSize = rowChunkSize;
+        this.threshold = threshold;
+        this.topK = topK;
+    }
+
+    /**
+     * Turns repos into sorted dependency index vectors, mirroring the analysis vocabulary.
+     *
+     * @param repos             Repos to vectorize.
+     * @param includeTransitive Whether to include transitive dependencies.
+     * @param includeSingleRepo Whether to include dependencies used by a single repo.
+     * @return Sorted dependency indices of each repo.
+     */
+    public static int[][] vectorize(List<MinedRepo> repos, boolean includeTransitive, boolean includeSingleRepo) {
+        // count repos for each dependency
+        HashMap<String, Integer> counts = new HashMap<>();
+        for (MinedRepo repo : repos) {
+            for (String dependencyId : repo.analysisDependencyIds(includeTransitive)) {
+                counts.merge(dependencyId, 1, Integer::sum);
+            }
+        }
+
+        // assign indices to used dependencies in sorted order
+        HashMap<String, Integer> indices = new HashMap<>();
+        for (Map.Entry<String, Integer> count : new TreeMap<>(counts).entrySet()) {
+            if (!includeSingleRepo && count.getValue() <= 1) continue;
+            indices.put(count.getKey(), indices.size());
+        }
+
+        // map repos
+        int[][] vectors = new int[repos.size()][];
+        for (int i = 0; i < repos.size(); i++) {
+            vectors[i] = repos.get(i).analysisDependencyIds(includeTransitive).stream()
+                    .map(indices::get)
+                    .filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+        }
+        return vectors;
+    }
+
+    /**
+     * Computes the sparse similarity matrix, resuming a previous run with the same output prefix.
+     *
+     * @param ids     Repo id of each row.
+     * @param vectors Sorted dependency indices of each repo.
+     * @param output  Output file prefix.
+     * @throws IOException
+     */
+    public void compute(List<String> ids, int[][] vectors, String output) throws IOException {
+        int n = vectors.length;
+        int[][] postings = buildPostings(vectors);
+
+        // check previous run
+        File idsFile = new File(output + ".ids");
+        File progressFile = new File(output + ".progress");
+        File metaFile = new File(output + ".meta");
+        String meta = "indices=long threshold=" + threshold + " topK=" + topK + " tileSize=" + tileSize
+                + " vectors=" + Integer.toHexString(Arrays.deepHashCode(vectors));
+        boolean resume = false;
+        if (idsFile.exists() && progressFile.exists()) {
+            List<String> previousIds = Files.readAllLines(idsFile.toPath());
+            if (!previousIds.equals(ids)) {
+                throw new IOException("Existing output " + output + " was computed for different repos!");
+            }
+            String previousMeta = metaFile.exists() ? Files.readString(metaFile.toPath()).trim() : null;
+            if (meta.equals(previousMeta)) {
+                resume = true;
+            } else {
+                System.out.println("Existing output " + output + " was computed with " + previousMeta + ", restarting");
+            }
+        }
+        int committedRows = 0;
+        if (resume) {
+            committedRows = Integer.parseInt(Files.readString(progressFile.toPath()).trim());
+            System.out.println("Resuming all-pairs similarity from row " + committedRows + "/" + n);
+        } else {
+            // drop the older run and write the meta last, so an interrupted restart never looks resumable
+            for (String extension : new String[]{".progress", ".meta", ".indptr", ".indices", ".values"}) {
+                Files.deleteIfExists(new File(output + extension).toPath());
+            }
+            Files.write(idsFile.toPath(), ids, StandardCharsets.UTF_8);
+            writeProgress(progressFile, 0);
+            Files.writeString(metaFile.toPath(), meta);
+        }
+
+        try (FileChannel indptrChannel = open(output + ".indptr");
+             FileChannel indicesChannel = open(output + ".indices");
+             FileChannel valuesChannel = open(output + ".values")) {
+            MappedByteBuffer indptrBuffer = indptrChannel.map(FileChannel.MapMode.READ_WRITE, 0, (n + 1) * 8L);
+            indptrBuffer.order(ByteOrder.LITTLE_ENDIAN);
+            LongBuffer indptr = indptrBuffer.asLongBuffer();
+            long entries = indptr.get(committedRows);
+
+            // score row chunks in parallel, committing them in order
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            Deque<Future<RowChunk>> pending = new ArrayDeque<>();
+            try {
+                for (int start = committedRows; start < n || !pending.isEmpty(); ) {
+                    if (start < n && pending.size() < threads * 2) {
+                        final int rowStart = start;
+                        final int rowEnd = Math.min(n, start + rowChunkSize);
+                        pending.add(executor.submit(() -> scoreRows(vectors, postings, rowStart, rowEnd)));
+                        start = rowEnd;
+                        continue;
+                    }
+
+                    // append finished chunk
+                    RowChunk chunk = pending.poll().get();
+                    entries = commit(chunk, entries, indptr, indicesChannel, valuesChannel);
+                    indptrBuffer.force();
+                    writeProgress(progressFile, chunk.rowEnd);
+                    System.out.println("All-pairs similarity: " + chunk.rowEnd + "/" + n + " rows, " + entries + " entries");
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException("All-pairs similarity failed", e);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // drop leftovers of an interrupted run
+            indicesChannel.truncate(entries * 8);
+            valuesChannel.truncate(entries * 4);
+        }
+    }
+
+    private static FileChannel open(String path) throws IOException {
+        return FileChannel.open(new File(path).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeProgress(File progressFile, int rows) throws IOException {
+        File tmp = new File(progressFile.getPath() + ".tmp");
+        Files.writeString(tmp.toPath(), Integer.toString(rows));
+        Files.move(tmp.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes a chunk's entries after the already committed ones.
+     *
+     * @return Total number of committed entries.
+     */
+    private static long commit(RowChunk chunk, long entries, LongBuffer indptr,
+                               FileChannel indicesChannel, FileChannel valuesChannel) throws IOException {
+        int count = chunk.columns.length;
+        if (count > 0) {
+            MappedByteBuffer indices = indicesChannel.map(FileChannel.MapMode.READ_WRITE, entries * 8, count * 8L);
+            MappedByteBuffer values = valuesChannel.map(FileChannel.MapMode.READ_WRITE, entries * 4, count * 4L);
+            LongBuffer columns = indices.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            for (int column : chunk.columns) {
+                columns.put(column);
+            }
+            values.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(chunk.values);
+            indices.force();
+            values.force();
+        }
+
+        // row offsets are written last so they only ever point at flushed entries
+        long offset = entries;
+        for (int i = 0; i < chunk.rowLengths.length; i++) {
+            offset += chunk.rowLengths[i];
+            indptr.put(chunk.rowStart + i + 1, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Builds the sorted list of repos containing each dependency.
+     */
+    private static int[][] buildPostings(int[][] vectors) {
+        int dimensions = 0;
+        for (int[] vector : vectors) {
+            if (vector.length > 0) dimensions = Math.max(dimensions, vector[vector.length - 1] + 1);
+        }
+        int[] sizes = new int[dimensions];
+        for (int[] vector : vectors) {
+            for (int dependency : vector) sizes[dependency]++;
+        }
+        int[][] postings = new int[dimensions][];
+        for (int d = 0; d < dimensions; d++) {
+            postings[d] = new int[sizes[d]];
+        }
+        int[] fill = new int[dimensions];
+        for (int repo = 0; repo < vectors.length; repo++) {
+            for (int dependency : vectors[repo]) {
+                postings[dependency][fill[dependency]++] = repo;
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Scores a chunk of rows against all columns, one column tile at a time.
+     */
+    private RowChunk scoreRows(int[][] vectors, int[][] postings, int rowStart, int rowEnd) {
+        int n = vectors.length;
+        int[] overlaps = new int[tileSize];
+        int[] touched = new int[tileSize];
+        int[] rowLengths = new int[rowEnd - rowStart];
+        IntList columns = new IntList();
+        FloatList values = new FloatList();
+
+        for (int row = rowStart; row < rowEnd; row++) {
+            int[] vector = vectors[row];
+            int[] cursors = new int[vector.length];
+            IntList rowColumns = new IntList();
+            FloatList rowValues = new FloatList();
+
+            for (int columnStart = 0; columnStart < n && vector.length > 0; columnStart += tileSize) {
+                int columnEnd = Math.min(n, columnStart + tileSize);
+
+                // count overlaps within the column tile
+                int touchedCount = 0;
+                for (int i = 0; i < vector.length; i++) {
+                    int[] posting = postings[vector[i]];
+                    int cursor = cursors[i];
+                    while (cursor < posting.length && posting[cursor] < columnEnd) {
+                        int column = posting[cursor++] - columnStart;
+                        if (overlaps[column]++ == 0) touched[touchedCount++] = column;
+                    }
+                    cursors[i] = cursor;
+                }
+
+                // keep entries above threshold in column order
+                Arrays.sort(touched, 0, touchedCount);
+                for (int t = 0; t < touchedCount; t++) {
+                    int column = touched[t];
+                    int overlap = overlaps[column];
+                    overlaps[column] = 0;
+                    int columnRepo = columnStart + column;
+                    if (columnRepo == row) continue;
+                    double similarity = (double) overlap / Math.max(vector.length, vectors[columnRepo].length);
+                    if (similarity < threshold) continue;
+                    rowColumns.add(columnRepo);
+                    rowValues.add((float) similarity);
+                }
+            }
+
+            // keep top k, ties broken by column
+            int kept = rowColumns.size;
+            if (topK > 0 && kept > topK) {
+                float[] sorted = rowValues.toArray();
+                Arrays.sort(sorted);
+                float cutoff = sorted[sorted.length - topK];
+                int above = 0;
+                for (int i = 0; i < rowValues.size; i++) {
+                    if (rowValues.data[i] > cutoff) above++;
+                }
+                int tiesLeft = topK - above;
+                kept = 0;
+                for (int i = 0; i < rowValues.size; i++) {
+                    float value = rowValues.data[i];
+                    if (value < cutoff) continue;
+                    if (value == cutoff && tiesLeft-- <= 0) continue;
+                    rowColumns.data[kept] = rowColumns.data[i];
+                    rowValues.data[kept] = value;
+                    kept++;
+                }
+            }
+            for (int i = 0; i < kept; i++) {
+                columns.add(rowColumns.data[i]);
+                values.add(rowValues.data[i]);
+            }
+            rowLengths[row - rowStart] = kept;
+        }
+        return new RowChunk(rowStart, rowLengths, columns.toArray(), values.toArray());
+    }
+
+    /**
+     * Scored entries of a chunk of rows.
+     */
+    private static class RowChunk {
+        final int rowStart;
+        final int rowEnd;
+        final int[] rowLengths;
+        final int[] columns;
+        final float[] values;
+
+        RowChunk(int rowStart, int[] rowLengths, int[] columns, float[] values) {
+            this.rowStart = rowStart;
+            this.rowEnd = rowStart + rowLengths.length;
+            this.rowLengths = rowLengths;
+            this.columns = columns;
+            this.values = values;
+        }
+    }
+
+    private static class IntList {
+        int[] data = new int[64];
+        int size = 0;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static class FloatList {
+        float[] data = new float[64];
+        int size = 0;
+
+        void add(float value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        float[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
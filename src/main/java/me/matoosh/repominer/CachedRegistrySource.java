@@ -0,0 +1,108 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry source keeping fetched package metadata in memory and on disk.
+ * Packages the registry does not know are remembered on disk as well, so they are not requested again.
+ * Concurrent requests for the same package share a single fetch.
+ * Without an upstream source only the disk cache is used and packages missing from it fail to fetch.
+ */
+public class CachedRegistrySource implements RegistrySource {
+    private final RegistrySource upstream;
+    private final File cacheDir;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, CompletableFuture<PackageMetadata>> memory = new ConcurrentHashMap<>();
+
+    private final AtomicInteger memoryHits = new AtomicInteger();
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /**
+     * @param upstream Source to fetch missing packages from, null to only use the cache.
+     * @param cacheDir Directory to persist package metadata in.
+     */
+    public CachedRegistrySource(RegistrySource upstream, File cacheDir) {
+        this.upstream = upstream;
+        this.cacheDir = cacheDir;
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+    }
+
+    @Override
+    public PackageMetadata fetch(String name) throws IOException {
+        // share in-flight and finished lookups
+        CompletableFuture<PackageMetadata> future = new CompletableFuture<>();
+        CompletableFuture<PackageMetadata> existing = memory.putIfAbsent(name, future);
+        if (existing != null) {
+            memoryHits.incrementAndGet();
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while fetching " + name, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to fetch " + name, e.getCause());
+            }
+        }
+
+        try {
+            PackageMetadata metadata = load(name);
+            future.complete(metadata);
+            return metadata;
+        } catch (IOException | RuntimeException e) {
+            // allow retrying failed fetches
+            memory.remove(name, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private PackageMetadata load(String name) throws IOException {
+        // read from disk
+        String fileName = URLEncoder.encode(name, StandardCharsets.UTF_8);
+        File file = new File(cacheDir, fileName + ".json");
+        File missingFile = new File(cacheDir, fileName + ".missing");
+        if (file.exists()) {
+            diskHits.incrementAndGet();
+            return mapper.readValue(file, PackageMetadata.class);
+        }
+        if (missingFile.exists()) {
+            diskHits.incrementAndGet();
+            return null;
+        }
+        if (upstream == null) throw new IOException(name + " is not in the offline registry cache");
+
+        // fetch and persist
+        fetches.incrementAndGet();
+        PackageMetadata metadata = upstream.fetch(name);
+        if (metadata == null) {
+            // remember that the package does not exist
+            missingFile.createNewFile();
+        } else {
+            File tmp = File.createTempFile("package", ".tmp", cacheDir);
+            mapper.writeValue(tmp, metadata);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return metadata;
+    }
+
+    /**
+     * @return Summary of cache hits and registry fetches.
+     */
+    public String getStats() {
+        return "memory hits: " + memoryHits.get() + ", disk hits: " + diskHits.get() + ", fetches: " + fetches.get();
+    }
+}
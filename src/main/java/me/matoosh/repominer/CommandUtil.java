@@ -7,6 +7,18 @@ import java.util.Scanner;
 
 public class CommandUtil {
     public static String executeCommand(String command, File dir) {
+        return executeCommand(command, dir, false);
+    }
+
+    /**
+     * Runs a command and collects its output.
+     *
+     * @param command        Command to run.
+     * @param dir            Working directory.
+     * @param requireSuccess Whether to return null when the command exits with an error.
+     * @return Output of the command or null if it could not be run.
+     */
+    public static String executeCommand(String command, File dir, boolean requireSuccess) {
         String javaHome8 = "/Library/Java/JavaVirtualMachines/adoptopenjdk-8.jdk/Contents/Home";
         String javaHome11 = "/Library/Java/JavaVirtualMachines/openjdk-11.jdk/Contents/Home";
         String javaHome17 = "/Users/itsmatoosh/Library/Java/JavaVirtualMachines/openjdk-17.0.2/Contents/Home";
@@ -15,9 +27,14 @@ public class CommandUtil {
             log(command);
             Process process = Runtime.getRuntime().exec(command, new String[]{"JAVA_HOME=" + javaHome, "ANDROID_HOME=/Users/itsmatoosh/Library/Android/sdk"}, dir);
             StringBuilder stringBuilder = new StringBuilder();
-            saveOutput(process.getInputStream(), stringBuilder);
+            Thread outputThread = saveOutput(process.getInputStream(), stringBuilder);
             logErrors(process.getErrorStream());
-            process.waitFor();
+            int exitCode = process.waitFor();
+            outputThread.join();
+            if (requireSuccess && exitCode != 0) {
+                log(command + " failed with exit code " + exitCode);
+                return null;
+            }
             return stringBuilder.toString();
         } catch (IOException | InterruptedException e) {
             e.printStackTrace();
@@ -35,8 +52,8 @@ public class CommandUtil {
         }).start();
     }
 
-    private static void saveOutput(InputStream inputStream, StringBuilder builder) {
-        new Thread(() -> {
+    private static Thread saveOutput(InputStream inputStream, StringBuilder builder) {
+        Thread thread = new Thread(() -> {
             Scanner scanner = new Scanner(inputStream, "UTF-8");
             while (scanner.hasNextLine()) {
                 String line = scanner.nextLine();
@@ -44,7 +61,9 @@ public class CommandUtil {
                 builder.append(line).append("\n");
             }
             scanner.close();
-        }).start();
+        });
+        thread.start();
+        return thread;
     }
 
     private static synchronized void log(String message) {
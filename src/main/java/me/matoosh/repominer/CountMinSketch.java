@@ -0,0 +1,82 @@
+package me.matoosh.repominer;
+
+/**
+ * Approximate frequency counter using bounded memory.
+ * Estimates never undercount, they overcount by at most total / width with high probability.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int[][] counts;
+    private final long[] seeds;
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param width Counters per row, higher means more accurate estimates.
+     * @param depth Number of rows, higher means a lower chance of a bad estimate.
+     */
+    public CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.counts = new int[depth][width];
+        this.seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = 0x9E3779B97F4A7C15L * (i + 1);
+        }
+    }
+
+    /**
+     * Increments the count of an item.
+     * Uses conservative update, only the smallest counters are raised.
+     *
+     * @param item Item to count.
+     * @return Estimated count after the increment.
+     */
+    public int add(String item) {
+        long hash = hash(item);
+        int[] buckets = new int[counts.length];
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < counts.length; i++) {
+            buckets[i] = bucket(hash, i);
+            estimate = Math.min(estimate, counts[i][buckets[i]]);
+        }
+        int updated = estimate + 1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i][buckets[i]] < updated) counts[i][buckets[i]] = updated;
+        }
+        return updated;
+    }
+
+    /**
+     * Estimates the count of an item.
+     *
+     * @param item Item to look up.
+     * @return Estimated count, never lower than the real count.
+     */
+    public int estimate(String item) {
+        long hash = hash(item);
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < counts.length; i++) {
+            estimate = Math.min(estimate, counts[i][bucket(hash, i)]);
+        }
+        return estimate;
+    }
+
+    private static long hash(String item) {
+        // 64-bit FNV-1a, so items sharing a String hash code still spread over the rows
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            hash ^= item.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private int bucket(long hash, int row) {
+        // splitmix64 finalizer per row
+        long h = hash + seeds[row];
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h = h ^ (h >>> 31);
+        return (int) Long.remainderUnsigned(h, width);
+    }
+}
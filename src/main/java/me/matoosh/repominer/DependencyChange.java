@@ -0,0 +1,35 @@
+package me.matoosh.repominer;
+
+/**
+ * Change of a dependency of a repo in a snapshot.
+ */
+public class DependencyChange {
+    public int snapshot;
+    public long timestamp;
+    public Type change;
+    public String version;
+
+    public DependencyChange() {
+    }
+
+    public DependencyChange(int snapshot, long timestamp, Type change, String version) {
+        this.snapshot = snapshot;
+        this.timestamp = timestamp;
+        this.change = change;
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyChange{" +
+                "snapshot=" + snapshot +
+                ", timestamp=" + timestamp +
+                ", change=" + change +
+                ", version='" + version + '\'' +
+                '}';
+    }
+
+    public enum Type {
+        ADDED, REMOVED, CHANGED
+    }
+}
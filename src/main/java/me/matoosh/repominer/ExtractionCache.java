@@ -0,0 +1,85 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Persistent cache of mined dependencies keyed by manifest fingerprint,
+ * so forks and repos with identical manifests are only built once.
+ */
+public class ExtractionCache {
+    private final File cacheDir;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private int hits = 0;
+    private int misses = 0;
+
+    /**
+     * @param cacheDir Directory to store the mined dependencies in.
+     */
+    public ExtractionCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+    }
+
+    /**
+     * Gets the dependencies previously mined from the same manifests.
+     *
+     * @param fingerprint Manifest fingerprint.
+     * @return Cached dependencies or null if the manifests were not mined before.
+     */
+    public Set<Dependency> get(String fingerprint) {
+        File file = getFile(fingerprint);
+        if (file.exists()) {
+            try {
+                Dependency[] dependencies = mapper.readValue(file, Dependency[].class);
+                hits++;
+                return new HashSet<>(Arrays.asList(dependencies));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the dependencies mined from a set of manifests.
+     * Only complete results belong here, since they are reused for every repo with the same manifests.
+     *
+     * @param fingerprint  Manifest fingerprint.
+     * @param dependencies Mined dependencies.
+     */
+    public void put(String fingerprint, Set<Dependency> dependencies) {
+        File file = getFile(fingerprint);
+        try {
+            file.getParentFile().mkdirs();
+            File tmp = File.createTempFile("extraction", ".tmp", file.getParentFile());
+            mapper.writeValue(tmp, dependencies);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return Summary of cache hits and misses.
+     */
+    public String getStats() {
+        int lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0 : 100.0 * hits / lookups;
+        return hits + " hits, " + misses + " misses (" + String.format("%.1f", hitRate) + "% hit rate)";
+    }
+
+    private File getFile(String fingerprint) {
+        return new File(new File(cacheDir, fingerprint.substring(0, 2)), fingerprint + ".json");
+    }
+}
@@ -0,0 +1,78 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Registry source reading package metadata from an HTTP registry.
+ */
+public abstract class HttpRegistrySource implements RegistrySource {
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    protected final String baseUrl;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param baseUrl Base URL of the registry, can point to a local mirror.
+     */
+    protected HttpRegistrySource(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * Gets a JSON document from the registry.
+     *
+     * @param url    URL of the document.
+     * @param accept Accepted content type.
+     * @return Parsed document or null if it does not exist.
+     * @throws IOException
+     */
+    protected JsonNode getJson(String url, String accept) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Accept", accept)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching " + url, e);
+        }
+        if (response.statusCode() == 404) return null;
+        if (response.statusCode() != 200) {
+            throw new IOException("Registry responded with " + response.statusCode() + " for " + url);
+        }
+        return mapper.readTree(response.body());
+    }
+
+    /**
+     * Reads a dependency map into name to version range pairs.
+     */
+    protected static void readDependencies(JsonNode dependencies, Map<String, String> into) {
+        if (dependencies == null || !dependencies.isObject()) return;
+        for (Iterator<String> it = dependencies.fieldNames(); it.hasNext(); ) {
+            String dependencyName = it.next();
+            JsonNode range = dependencies.get(dependencyName);
+            if (range.isTextual()) {
+                into.put(dependencyName, range.asText());
+            } else if (range.isObject() && range.get("version") != null) {
+                // hosted pub.dev dependency
+                into.put(dependencyName, range.get("version").asText());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package me.matoosh.repominer;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a sliding window of request latencies and reports percentiles.
+ */
+public class LatencyRecorder {
+    private final long[] samples;
+    private int next = 0;
+    private int count = 0;
+    private long total = 0;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param windowSize Number of most recent samples to keep.
+     */
+    public LatencyRecorder(int windowSize) {
+        this.samples = new long[windowSize];
+    }
+
+    /**
+     * Records a single latency.
+     *
+     * @param nanos Latency in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+        total++;
+    }
+
+    /**
+     * Summarizes the recorded latencies in milliseconds.
+     *
+     * @return Total request count and p50, p90, p99 and max latencies of the window.
+     */
+    public Map<String, Object> summary() {
+        long[] window;
+        long requests;
+        synchronized (this) {
+            window = Arrays.copyOf(samples, count);
+            requests = total;
+        }
+        Arrays.sort(window);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", requests);
+        summary.put("p50", percentile(window, 0.50));
+        summary.put("p90", percentile(window, 0.90));
+        summary.put("p99", percentile(window, 0.99));
+        summary.put("max", window.length == 0 ? 0.0 : window[window.length - 1] / 1e6);
+        return summary;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -3,6 +3,7 @@ package me.matoosh.repominer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -13,16 +14,74 @@ import org.kohsuke.github.GitHub;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.nio.file.Files;
 import java.util.*;
 
 public class Main {
+    private static TransitiveResolver npmResolver;
+    private static TransitiveResolver pubResolver;
+    private static CachedRegistrySource npmCache;
+    private static CachedRegistrySource pubCache;
+    private static ExtractionCache extractionCache;
+    /**
+     * Whether part of the repo being mined failed, like a module that did not build or unavailable registry metadata.
+     */
+    private static boolean minedPartially;
+
     public static void main(String[] args) throws Exception {
         // extract run params
         Namespace params = mapParams(args);
 
+        // run similarity server
+        Integer servePort = params.getInt("serve");
+        if (servePort != null) {
+            serveSimilarity(servePort);
+            return;
+        }
+
+        // compute sparse all-pairs similarity
+        String allPairsOutput = params.getString("all_pairs");
+        if (allPairsOutput != null) {
+            computeAllPairs(allPairsOutput, params.getDouble("threshold"), params.getInt("top_k"), params.getInt("tile_size"),
+                    params.getInt("row_chunk_size"), !params.getBoolean("exclude_transitive"));
+            return;
+        }
+
+        // build dependency vocabulary
+        String vocabularyOutput = params.getString("vocabulary");
+        if (vocabularyOutput != null) {
+            buildVocabulary(vocabularyOutput, params.getList("input"), params.getInt("min_repos"),
+                    !params.getBoolean("exclude_transitive"), params.getInt("sketch_width"));
+            return;
+        }
+
+        // query snapshot history
+        Integer reconstructNumber = params.getInt("reconstruct");
+        if (reconstructNumber != null) {
+            String output = "mined-" + reconstructNumber + ".json";
+            writeMinedReposToFile(openSnapshotStore(params).reconstruct(reconstructNumber), output);
+            System.out.println("Reconstructed snapshot " + reconstructNumber + " into " + output);
+            return;
+        }
+        List<String> dependencyHistory = params.getList("dependency_history");
+        if (dependencyHistory != null) {
+            printDependencyHistory(openSnapshotStore(params), dependencyHistory.get(0), dependencyHistory.get(1));
+            return;
+        }
+
+        // set up transitive resolution of npm and pub.dev dependencies
+        if (params.getBoolean("resolve_transitive")) {
+            setupResolvers(params);
+        }
+
+        // reuse dependencies of repos with identical manifests
+        if (!params.getBoolean("no_extraction_cache")) {
+            extractionCache = new ExtractionCache(new File(params.getString("extraction_cache")));
+        }
+
         // read repo file
         String path = (String) params.getList("file").get(0);
         List<Repo> repoList = readRepoList(path);
@@ -41,13 +100,14 @@ public class Main {
         }
         System.out.println("Read " + previouslyMinedMap.size() + " previously mined repos!");
 
-        // mine each repo
+        // mine each repo, again when recording history so changes are seen
         System.out.println("Mining repos...");
+        boolean recordHistory = params.getBoolean("record_history");
         List<MinedRepo> minedRepos = new ArrayList<>();
         for (Repo r :
                 repoList) {
             // check if already mined
-            if (previouslyMinedMap.containsKey(r.id)) {
+            if (previouslyMinedMap.containsKey(r.id) && !recordHistory) {
                 MinedRepo minedRepo = previouslyMinedMap.get(r.id);
                 minedRepo.category = r.category;
                 minedRepos.add(minedRepo);
@@ -58,6 +118,15 @@ public class Main {
 
             // mine deps
             final Set<Dependency> dependencies = mineRepo(git, r);
+            if (dependencies == null && previouslyMinedMap.containsKey(r.id)) {
+                // keep the repo in the snapshot instead of recording it as removed
+                MinedRepo minedRepo = previouslyMinedMap.get(r.id);
+                minedRepo.category = r.category;
+                minedRepos.add(minedRepo);
+                System.out.println(r.id + ": Mining failed, keeping previously mined dependencies!");
+                writeMinedReposToFile(minedRepos, "mined.json");
+                continue;
+            }
             if (dependencies == null) {
                 System.out.println(r.id + ": Invalid!");
                 continue;
@@ -70,8 +139,190 @@ public class Main {
 
             // save to disk
             writeMinedReposToFile(minedRepos, "mined.json");
+
+            // update running similarity server
+            String pushUrl = params.getString("push");
+            if (pushUrl != null) {
+                pushMinedRepo(minedRepo, pushUrl);
+            }
         }
         System.out.println("Mined " + minedRepos.size() + " new repos!");
+        if (extractionCache != null) {
+            System.out.println("Extraction cache: " + extractionCache.getStats());
+        }
+        if (npmCache != null) {
+            System.out.println("npm registry cache: " + npmCache.getStats());
+            System.out.println("pub.dev registry cache: " + pubCache.getStats());
+        }
+
+        // keep history of mined snapshots
+        if (recordHistory) {
+            openSnapshotStore(params).record(minedRepos);
+        }
+        if (npmResolver != null) npmResolver.close();
+        if (pubResolver != null) pubResolver.close();
+    }
+
+    /**
+     * Opens the snapshot history.
+     *
+     * @param params Run params.
+     * @return Snapshot store.
+     */
+    private static SnapshotStore openSnapshotStore(Namespace params) {
+        return new SnapshotStore(new File(params.getString("history")), params.getInt("checkpoint_interval"));
+    }
+
+    /**
+     * Prints when a repo gained, changed or lost a dependency.
+     *
+     * @param snapshotStore Snapshot history.
+     * @param repoId        Id of the repo.
+     * @param dependencyId  Id of the dependency.
+     * @throws IOException
+     */
+    private static void printDependencyHistory(SnapshotStore snapshotStore, String repoId, String dependencyId) throws IOException {
+        List<DependencyChange> changes = snapshotStore.history(repoId, dependencyId);
+        if (changes.isEmpty()) {
+            System.out.println(repoId + " never depended on " + dependencyId);
+            return;
+        }
+        for (DependencyChange change : changes) {
+            System.out.println("Snapshot " + change.snapshot + " (" + new Date(change.timestamp) + "): "
+                    + change.change + " " + dependencyId + " " + change.version);
+        }
+    }
+
+    /**
+     * Creates the npm and pub.dev resolvers, caching registry metadata on disk.
+     *
+     * @param params Run params.
+     */
+    private static void setupResolvers(Namespace params) {
+        File cacheDir = new File(params.getString("registry_cache"));
+        boolean offline = params.getBoolean("registry_offline");
+        int threads = params.getInt("resolver_threads");
+
+        RegistrySource npmSource = offline ? null : new NpmRegistrySource(params.getString("npm_registry"));
+        RegistrySource pubSource = offline ? null : new PubRegistrySource(params.getString("pub_registry"));
+        npmCache = new CachedRegistrySource(npmSource, new File(cacheDir, "npm"));
+        pubCache = new CachedRegistrySource(pubSource, new File(cacheDir, "pub.dev"));
+        npmResolver = new TransitiveResolver("npm", SemverRange.Dialect.NPM, npmCache, threads);
+        pubResolver = new TransitiveResolver("pub.dev", SemverRange.Dialect.PUB, pubCache, threads);
+    }
+
+    /**
+     * Adds the transitive dependencies of the given direct dependencies.
+     *
+     * @param dependencies Direct dependencies, may be null.
+     * @param resolver     Resolver to use, null to skip resolution.
+     * @return Direct and transitive dependencies.
+     */
+    private static Set<Dependency> addTransitiveDependencies(Set<Dependency> dependencies, TransitiveResolver resolver) {
+        if (dependencies == null || resolver == null) return dependencies;
+        TransitiveResolver.Resolution resolution = resolver.resolve(dependencies);
+        System.out.println("Resolved " + resolution.dependencies.size() + " transitive dependencies");
+        if (!resolution.complete) {
+            System.out.println("Some package metadata was unavailable, transitive dependencies are incomplete");
+            minedPartially = true;
+        }
+        dependencies.addAll(resolution.dependencies);
+        return dependencies;
+    }
+
+    /**
+     * Loads the mined repos into memory and serves similarity queries.
+     *
+     * @param port Port to listen on.
+     * @throws IOException
+     */
+    private static void serveSimilarity(int port) throws IOException {
+        // build index
+        SimilarityIndex index = new SimilarityIndex(true);
+        MinedRepo[] mined = readMinedReposFromFile("mined.json");
+        if (mined != null) {
+            index.putAll(Arrays.asList(mined));
+        }
+        System.out.println("Indexed " + index.size() + " repos with " + index.dependencyCount() + " dependencies!");
+
+        // start server
+        SimilarityServer server = new SimilarityServer(index);
+        server.start(port);
+    }
+
+    /**
+     * Computes the similarity between all mined repos into a sparse matrix on disk.
+     *
+     * @param output            Output file prefix.
+     * @param threshold         Minimum similarity of kept entries.
+     * @param topK              Maximum entries kept per repo, 0 for no limit.
+     * @param tileSize          Number of repos in a column tile.
+     * @param rowChunkSize      Number of repos scored per parallel task.
+     * @param includeTransitive Whether transitive dependencies count towards similarity.
+     * @throws IOException
+     */
+    private static void computeAllPairs(String output, double threshold, int topK, int tileSize, int rowChunkSize,
+                                        boolean includeTransitive) throws IOException {
+        MinedRepo[] mined = readMinedReposFromFile("mined.json");
+        if (mined == null) return;
+        List<MinedRepo> repos = Arrays.asList(mined);
+        List<String> ids = new ArrayList<>();
+        for (MinedRepo repo : repos) {
+            ids.add(repo.id);
+        }
+
+        AllPairsSimilarity allPairs = new AllPairsSimilarity(tileSize, rowChunkSize, threshold, topK);
+        allPairs.compute(ids, AllPairsSimilarity.vectorize(repos, includeTransitive, true), output);
+        System.out.println("Computed all-pairs similarity of " + repos.size() + " repos into " + output);
+    }
+
+    /**
+     * Builds the dependency vocabulary of mined repos with IDF weights.
+     *
+     * @param output            File to write the vocabulary to.
+     * @param inputs            Mined repo files or directories of shards.
+     * @param minRepos          Minimum number of repos using a kept dependency.
+     * @param includeTransitive Whether to count transitive dependencies.
+     * @param sketchWidth       Counters per row of the frequency sketch.
+     * @throws IOException
+     */
+    private static void buildVocabulary(String output, List<String> inputs, int minRepos,
+                                        boolean includeTransitive, int sketchWidth) throws IOException {
+        List<File> inputFiles = new ArrayList<>();
+        for (String input : inputs) {
+            inputFiles.add(new File(input));
+        }
+
+        VocabularyBuilder builder = new VocabularyBuilder(minRepos, includeTransitive, sketchWidth, 4);
+        List<VocabularyEntry> vocabulary = builder.build(new MinedRepoReader(), inputFiles);
+
+        System.out.println("Saving vocabulary to " + output);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.writeValue(new File(output), vocabulary);
+    }
+
+    /**
+     * Sends a freshly mined repo to a running similarity server.
+     *
+     * @param minedRepo Mined repo to send.
+     * @param serverUrl Base URL of the similarity server.
+     */
+    private static void pushMinedRepo(MinedRepo minedRepo, String serverUrl) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(serverUrl + "/repos").openConnection();
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setDoOutput(true);
+            try (OutputStream output = connection.getOutputStream()) {
+                new ObjectMapper().writeValue(output, minedRepo);
+            }
+            if (connection.getResponseCode() != 200) {
+                System.out.println(minedRepo.id + ": Similarity server responded with " + connection.getResponseCode());
+            }
+            connection.disconnect();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -86,6 +337,40 @@ public class Main {
         // get repository
         final GHRepository repository = git.getRepository(repo.id);
 
+        // reuse dependencies mined from identical manifests
+        String fingerprint = null;
+        if (extractionCache != null) {
+            String mode = npmResolver != null ? "v3+transitive" : "v3";
+            fingerprint = ManifestFingerprint.of(repository, mode);
+            if (fingerprint != null) {
+                Set<Dependency> cached = extractionCache.get(fingerprint);
+                if (cached != null) {
+                    System.out.println(repo.id + ": Reusing dependencies mined from identical manifests!");
+                    return cached;
+                }
+            }
+        }
+
+        // mine and remember complete results
+        minedPartially = false;
+        Set<Dependency> dependencies = mineRepository(repository);
+        if (dependencies != null && fingerprint != null) {
+            if (minedPartially) {
+                System.out.println(repo.id + ": Not caching partially mined dependencies");
+            } else {
+                extractionCache.put(fingerprint, dependencies);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Mines the dependencies of a repository using the first build manifest found.
+     *
+     * @param repository Repository to mine.
+     * @return Mined dependencies or null if no manifest could be mined.
+     */
+    private static Set<Dependency> mineRepository(GHRepository repository) {
         // get pom.xml
         GHContent pomFile = null;
         try {
@@ -105,7 +390,7 @@ public class Main {
             // ignore
         }
         if (packageJsonFile != null && packageJsonFile.isFile()) {
-            return minePackageJsonDependencies(packageJsonFile);
+            return addTransitiveDependencies(minePackageJsonDependencies(packageJsonFile), npmResolver);
         }
 
         // get pubspec.yaml
@@ -116,7 +401,7 @@ public class Main {
             // ignore
         }
         if (pubspecYamlFile != null && pubspecYamlFile.isFile()) {
-            return minePubspecYamlDependencies(pubspecYamlFile);
+            return addTransitiveDependencies(minePubspecYamlDependencies(pubspecYamlFile), pubResolver);
         }
 
         // get build.gradle or build.gradle.kts
@@ -155,8 +440,12 @@ public class Main {
 
         // get sub-projects
         CommandUtil.executeCommand("chmod +ux ./gradlew", repo);
-        String projectsOutput = CommandUtil.executeCommand("./gradlew projects", repo);
-        if (projectsOutput == null) return null;
+        String projectsOutput = CommandUtil.executeCommand("./gradlew projects", repo, true);
+        if (projectsOutput == null) {
+            // only the root project can be mined
+            minedPartially = true;
+            projectsOutput = "";
+        }
 
         // extract sub-projects
         Set<String> gradleProjects = new HashSet<>();
@@ -176,12 +465,15 @@ public class Main {
             String output;
             if (gradleProject.equals("root")) {
                 // mine root project
-                output = CommandUtil.executeCommand("./gradlew dependencies", repo);
+                output = CommandUtil.executeCommand("./gradlew dependencies", repo, true);
             } else {
                 // mine sub-project
-                output = CommandUtil.executeCommand("./gradlew " + gradleProject + ":dependencies", repo);
+                output = CommandUtil.executeCommand("./gradlew " + gradleProject + ":dependencies", repo, true);
+            }
+            if (output == null) {
+                minedPartially = true;
+                continue;
             }
-            if (output == null) continue;
 
             // extract dependencies
             for (String line : output.lines().toList()) {
@@ -286,8 +578,11 @@ public class Main {
         System.out.println("Mining pom.xml at " + pomFile);
 
         // run mvn
-        String output = CommandUtil.executeCommand("mvn dependency:tree", pomFile.getParentFile());
-        if (output == null) return null;
+        String output = CommandUtil.executeCommand("mvn dependency:tree", pomFile.getParentFile(), true);
+        if (output == null) {
+            minedPartially = true;
+            return null;
+        }
 
         // extract dependencies
         Set<Dependency> dependencies = new HashSet<>();
@@ -640,6 +935,56 @@ public class Main {
                 .description("Mine dependencies for a list of GitHub dependencies.");
         parser.addArgument("--file", "-f").nargs(1)
                 .help("Text file with a list of repositories.");
+        parser.addArgument("--serve").type(Integer.class)
+                .help("Serve similarity queries for mined.json on the given port.");
+        parser.addArgument("--push")
+                .help("URL of a running similarity server to send newly mined repos to.");
+        parser.addArgument("--all-pairs")
+                .help("Compute the sparse similarity matrix of mined.json into files with the given prefix.");
+        parser.addArgument("--threshold").type(Double.class).setDefault(0.0)
+                .help("Minimum similarity kept by --all-pairs.");
+        parser.addArgument("--top-k").type(Integer.class).setDefault(0)
+                .help("Maximum similar repos kept per repo by --all-pairs, 0 for no limit.");
+        parser.addArgument("--tile-size").type(Integer.class).setDefault(4096)
+                .help("Number of repos per column tile in --all-pairs, sized to stay in cache.");
+        parser.addArgument("--row-chunk-size").type(Integer.class).setDefault(64)
+                .help("Number of repos scored per parallel task in --all-pairs.");
+        parser.addArgument("--vocabulary")
+                .help("Build the dependency vocabulary with IDF weights into the given file.");
+        parser.addArgument("--input").nargs("+").setDefault(List.of("mined.json"))
+                .help("Mined repo files (JSON arrays or one repo per line) or directories of them, read by --vocabulary.");
+        parser.addArgument("--min-repos").type(Integer.class).setDefault(2)
+                .help("Minimum number of repos using a dependency kept by --vocabulary.");
+        parser.addArgument("--exclude-transitive").action(Arguments.storeTrue())
+                .help("Ignore transitive dependencies in --vocabulary and --all-pairs.");
+        parser.addArgument("--sketch-width").type(Integer.class).setDefault(1 << 20)
+                .help("Counters per row of the frequency sketch used by --vocabulary.");
+        parser.addArgument("--resolve-transitive").action(Arguments.storeTrue())
+                .help("Resolve transitive npm and pub.dev dependencies from registry metadata.");
+        parser.addArgument("--registry-cache").setDefault("registry-cache")
+                .help("Directory to cache registry metadata in.");
+        parser.addArgument("--registry-offline").action(Arguments.storeTrue())
+                .help("Only use cached registry metadata.");
+        parser.addArgument("--npm-registry").setDefault(NpmRegistrySource.DEFAULT_URL)
+                .help("URL of the npm registry.");
+        parser.addArgument("--pub-registry").setDefault(PubRegistrySource.DEFAULT_URL)
+                .help("URL of the pub.dev registry.");
+        parser.addArgument("--resolver-threads").type(Integer.class).setDefault(16)
+                .help("Number of packages fetched in parallel during resolution.");
+        parser.addArgument("--extraction-cache").setDefault("extraction-cache")
+                .help("Directory to cache dependencies mined from identical manifests in.");
+        parser.addArgument("--no-extraction-cache").action(Arguments.storeTrue())
+                .help("Mine every repo even when its manifests were mined before.");
+        parser.addArgument("--history").setDefault("history")
+                .help("Directory of the mined snapshot history.");
+        parser.addArgument("--record-history").action(Arguments.storeTrue())
+                .help("Mine all repos again, including already mined ones, and record them as a new snapshot in the history.");
+        parser.addArgument("--checkpoint-interval").type(Integer.class).setDefault(30)
+                .help("Number of snapshots between full checkpoints in the history.");
+        parser.addArgument("--reconstruct").type(Integer.class)
+                .help("Write the given historical snapshot to mined-N.json.");
+        parser.addArgument("--dependency-history").nargs(2)
+                .help("Print when the given repo gained or lost the given dependency.");
         try {
             return parser.parseArgs(args);
         } catch (ArgumentParserException e) {
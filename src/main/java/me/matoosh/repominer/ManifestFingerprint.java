@@ -0,0 +1,104 @@
+package me.matoosh.repominer;
+
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GHTree;
+import org.kohsuke.github.GHTreeEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fingerprints the set of build manifests a repo is mined from, using their git blob SHAs.
+ * Repos with identical manifests at identical paths share a fingerprint.
+ */
+public class ManifestFingerprint {
+    /**
+     * File names which can influence the mined dependencies.
+     */
+    private static final Set<String> MANIFEST_NAMES = Set.of(
+            "pom.xml",
+            "gradle.properties", "gradle-wrapper.properties",
+            "package.json", "package-lock.json", "npm-shrinkwrap.json", "yarn.lock", "pnpm-lock.yaml",
+            "pubspec.yaml", "pubspec.lock"
+    );
+    /**
+     * File name endings which can influence the mined dependencies,
+     * covering scripts pulled in with apply from and version catalogs of any name.
+     */
+    private static final List<String> MANIFEST_EXTENSIONS = List.of(".gradle", ".gradle.kts", ".versions.toml");
+
+    /**
+     * Fingerprints the manifests on the default branch of a repository.
+     *
+     * @param repository Repository to fingerprint.
+     * @param mode       Mining options which change the mined dependencies.
+     * @return Fingerprint or null if the repository has no manifests or its tree could not be listed fully.
+     */
+    public static String of(GHRepository repository, String mode) {
+        GHTree tree;
+        try {
+            tree = repository.getTreeRecursive(repository.getDefaultBranch(), 1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (tree == null || tree.isTruncated()) return null;
+
+        // collect manifests
+        List<String> manifests = new ArrayList<>();
+        for (GHTreeEntry entry : tree.getTree()) {
+            if (!entry.getType().equals("blob")) continue;
+            if (isManifest(entry.getPath())) {
+                manifests.add(entry.getPath() + ":" + entry.getSha());
+            }
+        }
+        if (manifests.isEmpty()) return null;
+        Collections.sort(manifests);
+        return of(manifests, mode);
+    }
+
+    /**
+     * Checks whether a file can influence the mined dependencies.
+     *
+     * @param path Path of the file in the repository.
+     * @return Whether the file is part of the fingerprint.
+     */
+    public static boolean isManifest(String path) {
+        // buildSrc is compiled into the build, so all of it counts
+        if (path.startsWith("buildSrc/") || path.contains("/buildSrc/")) return true;
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        if (MANIFEST_NAMES.contains(fileName)) return true;
+        for (String extension : MANIFEST_EXTENSIONS) {
+            if (fileName.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hashes sorted manifest path and blob SHA pairs.
+     *
+     * @param manifests Sorted path:sha pairs.
+     * @param mode      Mining options which change the mined dependencies.
+     * @return Hex encoded fingerprint.
+     */
+    public static String of(List<String> manifests, String mode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(mode.getBytes(StandardCharsets.UTF_8));
+            for (String manifest : manifests) {
+                digest.update((byte) '\n');
+                digest.update(manifest.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package me.matoosh.repominer;
 
-import java.util.List;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -17,4 +17,22 @@ public class MinedRepo extends Repo {
     }
 
     public Set<Dependency> dependencies;
+
+    /**
+     * Gets the dependency ids used by the analysis, see get_all_dependencies.
+     * Only group:artifact ids are kept, which skips npm and pub.dev packages.
+     *
+     * @param includeTransitive Whether to include transitive dependencies.
+     * @return Unique dependency ids.
+     */
+    public Set<String> analysisDependencyIds(boolean includeTransitive) {
+        Set<String> ids = new HashSet<>();
+        if (dependencies == null) return ids;
+        for (Dependency dependency : dependencies) {
+            if (!includeTransitive && dependency.type == DependencyType.TRANSITIVE) continue;
+            if (dependency.id == null || dependency.id.split(":", -1).length != 2) continue;
+            ids.add(dependency.id);
+        }
+        return ids;
+    }
 }
@@ -0,0 +1,74 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streams mined repos one at a time without loading whole files into memory.
+ * Reads JSON arrays like mined.json, files with one mined repo per line,
+ * and directories of such shards.
+ */
+public class MinedRepoReader {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Reads all mined repos from the given files and directories.
+     *
+     * @param inputs   Files or directories of files to read.
+     * @param consumer Called for each mined repo.
+     * @throws IOException
+     */
+    public void read(List<File> inputs, Consumer<MinedRepo> consumer) throws IOException {
+        for (File file : expand(inputs)) {
+            read(file, consumer);
+        }
+    }
+
+    /**
+     * Reads all mined repos from a single file.
+     *
+     * @param file     File to read.
+     * @param consumer Called for each mined repo.
+     * @throws IOException
+     */
+    public void read(File file, Consumer<MinedRepo> consumer) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(file)) {
+            // step into a wrapping array, skipping empty ones
+            JsonToken token = parser.nextToken();
+            if (token == null) return;
+            if (token == JsonToken.START_ARRAY && parser.nextToken() == JsonToken.END_ARRAY) return;
+            try (MappingIterator<MinedRepo> repos = mapper.readValues(parser, MinedRepo.class)) {
+                while (repos.hasNext()) {
+                    consumer.accept(repos.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces directories with the files inside them, in name order.
+     */
+    private static List<File> expand(List<File> inputs) {
+        List<File> files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                File[] children = input.listFiles(f -> f.isFile() && !f.getName().startsWith("."));
+                if (children == null) continue;
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+}
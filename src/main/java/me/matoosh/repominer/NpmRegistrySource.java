@@ -0,0 +1,38 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Reads package metadata from an npm registry.
+ */
+public class NpmRegistrySource extends HttpRegistrySource {
+    public static final String DEFAULT_URL = "https://registry.npmjs.org";
+
+    public NpmRegistrySource(String baseUrl) {
+        super(baseUrl);
+    }
+
+    @Override
+    public PackageMetadata fetch(String name) throws IOException {
+        // abbreviated packuments only carry what installs need
+        JsonNode packument = getJson(baseUrl + "/" + name.replace("/", "%2F"),
+                "application/vnd.npm.install-v1+json; q=1.0, application/json; q=0.8");
+        if (packument == null) return null;
+
+        PackageMetadata metadata = new PackageMetadata(name);
+        JsonNode versions = packument.get("versions");
+        if (versions == null) return metadata;
+        for (Iterator<String> it = versions.fieldNames(); it.hasNext(); ) {
+            String version = it.next();
+            Map<String, String> dependencies = new HashMap<>();
+            readDependencies(versions.get(version).get("dependencies"), dependencies);
+            metadata.versions.put(version, dependencies);
+        }
+        return metadata;
+    }
+}
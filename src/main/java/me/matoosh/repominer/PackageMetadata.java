@@ -0,0 +1,30 @@
+package me.matoosh.repominer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry metadata of a package, reduced to what dependency resolution needs.
+ */
+public class PackageMetadata {
+    public String name;
+    /**
+     * Dependencies of each published version, mapped from dependency name to version range.
+     */
+    public Map<String, Map<String, String>> versions = new HashMap<>();
+
+    public PackageMetadata() {
+    }
+
+    public PackageMetadata(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return "PackageMetadata{" +
+                "name='" + name + '\'' +
+                ", versions=" + versions.size() +
+                '}';
+    }
+}
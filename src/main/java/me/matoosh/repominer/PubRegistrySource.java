@@ -0,0 +1,37 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads package metadata from a pub.dev compatible registry.
+ */
+public class PubRegistrySource extends HttpRegistrySource {
+    public static final String DEFAULT_URL = "https://pub.dev";
+
+    public PubRegistrySource(String baseUrl) {
+        super(baseUrl);
+    }
+
+    @Override
+    public PackageMetadata fetch(String name) throws IOException {
+        JsonNode document = getJson(baseUrl + "/api/packages/" + name, "application/vnd.pub.v2+json");
+        if (document == null) return null;
+
+        PackageMetadata metadata = new PackageMetadata(name);
+        JsonNode versions = document.get("versions");
+        if (versions == null || !versions.isArray()) return metadata;
+        for (JsonNode version : versions) {
+            JsonNode pubspec = version.get("pubspec");
+            Map<String, String> dependencies = new HashMap<>();
+            if (pubspec != null) {
+                readDependencies(pubspec.get("dependencies"), dependencies);
+            }
+            metadata.versions.put(version.get("version").asText(), dependencies);
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,17 @@
+package me.matoosh.repominer;
+
+import java.io.IOException;
+
+/**
+ * Source of package metadata for dependency resolution.
+ */
+public interface RegistrySource {
+    /**
+     * Fetches the metadata of a package.
+     *
+     * @param name Name of the package.
+     * @return Package metadata or null if the package does not exist.
+     * @throws IOException
+     */
+    PackageMetadata fetch(String name) throws IOException;
+}
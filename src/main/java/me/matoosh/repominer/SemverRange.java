@@ -0,0 +1,318 @@
+package me.matoosh.repominer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Version range as used by npm and pub.dev, e.g. ^1.2.0, ~1.2, 1.x, &gt;=1.0.0 &lt;2.0.0 or 1.0.0 - 2.0.0 || 3.x.
+ * The dialects only differ in caret ranges below 1.0.0, where npm allows ^0.0.3 up to 0.0.4 and pub.dev up to 0.1.0.
+ */
+public class SemverRange {
+    /**
+     * Package manager whose range rules to follow.
+     */
+    public enum Dialect {
+        NPM, PUB
+    }
+
+    /**
+     * Alternatives of the range, each a list of comparators which must all match.
+     */
+    private final List<List<Comparator>> alternatives;
+
+    private SemverRange(List<List<Comparator>> alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    /**
+     * Parses an npm version range.
+     *
+     * @param range Range to parse.
+     * @return Parsed range or null for ranges which are not versions, like git urls or local paths.
+     */
+    public static SemverRange parse(String range) {
+        return parse(range, Dialect.NPM);
+    }
+
+    /**
+     * Parses a version range.
+     *
+     * @param range   Range to parse.
+     * @param dialect Package manager the range comes from.
+     * @return Parsed range or null for ranges which are not versions, like git urls or local paths.
+     */
+    public static SemverRange parse(String range, Dialect dialect) {
+        if (range == null) return null;
+        String trimmed = range.trim();
+        if (trimmed.isEmpty() || trimmed.equals("latest") || trimmed.equals("any")) trimmed = "*";
+        if (trimmed.contains(":") || trimmed.contains("/")) return null;
+
+        List<List<Comparator>> alternatives = new ArrayList<>();
+        for (String alternative : trimmed.split("\\|\\|")) {
+            List<Comparator> comparators = parseAlternative(alternative.trim(), dialect);
+            if (comparators == null) return null;
+            alternatives.add(comparators);
+        }
+        return new SemverRange(alternatives);
+    }
+
+    /**
+     * Finds the highest version satisfying the range.
+     *
+     * @param versions Available versions.
+     * @return Highest satisfying version or null if none satisfies the range.
+     */
+    public String maxSatisfying(Collection<String> versions) {
+        String best = null;
+        SemverVersion bestVersion = null;
+        for (String version : versions) {
+            SemverVersion parsed = SemverVersion.parse(version);
+            if (parsed == null || !satisfies(parsed)) continue;
+            if (bestVersion == null || parsed.compareTo(bestVersion) > 0) {
+                best = version;
+                bestVersion = parsed;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether a version is in the range.
+     * Prereleases only match when a comparator names a prerelease of the same release.
+     *
+     * @param version Version to check.
+     * @return Whether the version satisfies the range.
+     */
+    public boolean satisfies(SemverVersion version) {
+        for (List<Comparator> comparators : alternatives) {
+            boolean matches = true;
+            boolean prereleaseAllowed = !version.isPrerelease();
+            for (Comparator comparator : comparators) {
+                if (!comparator.matches(version)) {
+                    matches = false;
+                    break;
+                }
+                if (comparator.namesPrerelease() && comparator.version.sameRelease(version)) {
+                    prereleaseAllowed = true;
+                }
+            }
+            if (matches && prereleaseAllowed) return true;
+        }
+        return false;
+    }
+
+    private static List<Comparator> parseAlternative(String alternative, Dialect dialect) {
+        List<Comparator> comparators = new ArrayList<>();
+
+        // hyphen range
+        String[] hyphen = alternative.split("\\s+-\\s+");
+        if (hyphen.length == 2) {
+            Partial from = Partial.parse(hyphen[0]);
+            Partial to = Partial.parse(hyphen[1]);
+            if (from == null || to == null) return null;
+            comparators.add(new Comparator(Operator.GTE, from.floor(), true));
+            addUpperBound(comparators, to, true);
+            return comparators;
+        }
+
+        // join operators separated from their version, like ">= 1.0.0"
+        String joined = alternative.replaceAll("(<=|>=|<|>|=|\\^|~)\\s+", "$1");
+        for (String part : joined.split("\\s+")) {
+            if (part.isEmpty()) continue;
+            if (!parseComparator(part, dialect, comparators)) return null;
+        }
+        return comparators;
+    }
+
+    private static boolean parseComparator(String part, Dialect dialect, List<Comparator> comparators) {
+        // split operator
+        String operator = "";
+        for (String candidate : new String[]{">=", "<=", ">", "<", "=", "^", "~>", "~"}) {
+            if (part.startsWith(candidate)) {
+                operator = candidate;
+                break;
+            }
+        }
+        Partial partial = Partial.parse(part.substring(operator.length()));
+        if (partial == null) return false;
+        if (partial.major == null) {
+            // wildcard, only < and > exclude everything
+            if (operator.equals("<") || operator.equals(">")) {
+                comparators.add(new Comparator(Operator.LT, new SemverVersion(0, 0, 0, "0"), false));
+            }
+            return true;
+        }
+
+        switch (operator) {
+            case ">=":
+                comparators.add(new Comparator(Operator.GTE, partial.floor(), true));
+                break;
+            case ">":
+                if (partial.isComplete()) {
+                    comparators.add(new Comparator(Operator.GT, partial.floor(), true));
+                } else {
+                    comparators.add(new Comparator(Operator.GTE, partial.nextAtLastGiven(), false));
+                }
+                break;
+            case "<":
+                comparators.add(new Comparator(Operator.LT, partial.floor(), true));
+                break;
+            case "<=":
+                addUpperBound(comparators, partial, true);
+                break;
+            case "^":
+                comparators.add(new Comparator(Operator.GTE, partial.floor(), true));
+                comparators.add(new Comparator(Operator.LT, partial.caretCeiling(dialect), false));
+                break;
+            case "~":
+            case "~>":
+                comparators.add(new Comparator(Operator.GTE, partial.floor(), true));
+                comparators.add(new Comparator(Operator.LT, partial.tildeCeiling(), false));
+                break;
+            default:
+                // exact or x-range
+                if (partial.isComplete()) {
+                    comparators.add(new Comparator(Operator.EQ, partial.floor(), true));
+                } else {
+                    comparators.add(new Comparator(Operator.GTE, partial.floor(), true));
+                    comparators.add(new Comparator(Operator.LT, partial.nextAtLastGiven(), false));
+                }
+        }
+        return true;
+    }
+
+    private static void addUpperBound(List<Comparator> comparators, Partial partial, boolean inclusive) {
+        if (partial.major == null) return;
+        if (partial.isComplete()) {
+            comparators.add(new Comparator(inclusive ? Operator.LTE : Operator.LT, partial.floor(), true));
+        } else {
+            comparators.add(new Comparator(Operator.LT, partial.nextAtLastGiven(), false));
+        }
+    }
+
+    private enum Operator {
+        LT, LTE, GT, GTE, EQ
+    }
+
+    private static class Comparator {
+        final Operator operator;
+        final SemverVersion version;
+        /**
+         * Whether the version was written in the range, as opposed to a generated bound like the 2.0.0-0 of ^1.0.0.
+         */
+        final boolean written;
+
+        Comparator(Operator operator, SemverVersion version, boolean written) {
+            this.operator = operator;
+            this.version = version;
+            this.written = written;
+        }
+
+        /**
+         * @return Whether the range itself names a prerelease, which allows prereleases of the same release.
+         */
+        boolean namesPrerelease() {
+            return written && version.isPrerelease();
+        }
+
+        boolean matches(SemverVersion other) {
+            int compared = other.compareTo(version);
+            switch (operator) {
+                case LT:
+                    return compared < 0;
+                case LTE:
+                    return compared <= 0;
+                case GT:
+                    return compared > 0;
+                case GTE:
+                    return compared >= 0;
+                default:
+                    return compared == 0;
+            }
+        }
+    }
+
+    /**
+     * Version with possibly missing or wildcard parts, like 1.2 or 1.x.
+     */
+    private static class Partial {
+        final Integer major;
+        final Integer minor;
+        final Integer patch;
+        final String prerelease;
+
+        Partial(Integer major, Integer minor, Integer patch, String prerelease) {
+            this.major = major;
+            this.minor = minor;
+            this.patch = patch;
+            this.prerelease = prerelease;
+        }
+
+        static Partial parse(String version) {
+            String trimmed = version.trim();
+            if (trimmed.startsWith("v") || trimmed.startsWith("=")) trimmed = trimmed.substring(1);
+            int plusIndex = trimmed.indexOf('+');
+            if (plusIndex > -1) trimmed = trimmed.substring(0, plusIndex);
+            String prerelease = null;
+            int dashIndex = trimmed.indexOf('-');
+            if (dashIndex > -1) {
+                prerelease = trimmed.substring(dashIndex + 1);
+                trimmed = trimmed.substring(0, dashIndex);
+            }
+
+            String[] parts = trimmed.split("\\.");
+            if (parts.length > 3) return null;
+            Integer[] numbers = new Integer[3];
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.equals("x") || part.equals("X") || part.equals("*")) break;
+                try {
+                    numbers[i] = Integer.parseInt(part);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            return new Partial(numbers[0], numbers[0] == null ? null : numbers[1],
+                    numbers[1] == null ? null : numbers[2], prerelease);
+        }
+
+        boolean isComplete() {
+            return patch != null;
+        }
+
+        SemverVersion floor() {
+            return new SemverVersion(major, orZero(minor), orZero(patch), isComplete() ? prerelease : null);
+        }
+
+        /**
+         * Bumps the last given part, 1.2 becomes 1.3.0 and 1 becomes 2.0.0.
+         */
+        SemverVersion nextAtLastGiven() {
+            if (minor == null) return new SemverVersion(major + 1, 0, 0, "0");
+            return new SemverVersion(major, minor + 1, 0, "0");
+        }
+
+        /**
+         * Bumps the first non-zero part, ^1.2.3 allows up to 2.0.0 and ^0.2.3 up to 0.3.0.
+         * pub.dev never bumps only the patch, so ^0.0.3 allows up to 0.1.0 there.
+         */
+        SemverVersion caretCeiling(Dialect dialect) {
+            if (major != 0 || minor == null) return new SemverVersion(major + 1, 0, 0, "0");
+            if (minor != 0 || patch == null || dialect == Dialect.PUB) return new SemverVersion(0, minor + 1, 0, "0");
+            return new SemverVersion(0, 0, patch + 1, "0");
+        }
+
+        /**
+         * Bumps minor when given, ~1.2.3 allows up to 1.3.0 and ~1 up to 2.0.0.
+         */
+        SemverVersion tildeCeiling() {
+            if (minor == null) return new SemverVersion(major + 1, 0, 0, "0");
+            return new SemverVersion(major, minor + 1, 0, "0");
+        }
+
+        private static int orZero(Integer value) {
+            return value == null ? 0 : value;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package me.matoosh.repominer;
+
+import java.util.Objects;
+
+/**
+ * Semantic version, compared by major, minor, patch and prerelease.
+ * Build metadata is ignored.
+ */
+public class SemverVersion implements Comparable<SemverVersion> {
+    public final int major;
+    public final int minor;
+    public final int patch;
+    public final String prerelease;
+
+    public SemverVersion(int major, int minor, int patch, String prerelease) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.prerelease = prerelease;
+    }
+
+    /**
+     * Parses a version like 1.2.3, v1.2.3 or 1.2.3-beta.1+build.
+     *
+     * @param version Version to parse.
+     * @return Parsed version or null if it is not a semantic version.
+     */
+    public static SemverVersion parse(String version) {
+        if (version == null) return null;
+        String trimmed = version.trim();
+        if (trimmed.startsWith("v") || trimmed.startsWith("=")) trimmed = trimmed.substring(1);
+
+        // strip build metadata and prerelease
+        int plusIndex = trimmed.indexOf('+');
+        if (plusIndex > -1) trimmed = trimmed.substring(0, plusIndex);
+        String prerelease = null;
+        int dashIndex = trimmed.indexOf('-');
+        if (dashIndex > -1) {
+            prerelease = trimmed.substring(dashIndex + 1);
+            trimmed = trimmed.substring(0, dashIndex);
+        }
+
+        String[] parts = trimmed.split("\\.");
+        if (parts.length != 3) return null;
+        try {
+            return new SemverVersion(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), prerelease);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isPrerelease() {
+        return prerelease != null;
+    }
+
+    /**
+     * @return Whether both versions share major, minor and patch.
+     */
+    public boolean sameRelease(SemverVersion other) {
+        return major == other.major && minor == other.minor && patch == other.patch;
+    }
+
+    @Override
+    public int compareTo(SemverVersion other) {
+        if (major != other.major) return Integer.compare(major, other.major);
+        if (minor != other.minor) return Integer.compare(minor, other.minor);
+        if (patch != other.patch) return Integer.compare(patch, other.patch);
+
+        // a release is newer than its prereleases
+        if (prerelease == null || other.prerelease == null) {
+            if (prerelease == null && other.prerelease == null) return 0;
+            return prerelease == null ? 1 : -1;
+        }
+        String[] ours = prerelease.split("\\.");
+        String[] theirs = other.prerelease.split("\\.");
+        for (int i = 0; i < Math.min(ours.length, theirs.length); i++) {
+            int compared = comparePrereleasePart(ours[i], theirs[i]);
+            if (compared != 0) return compared;
+        }
+        return Integer.compare(ours.length, theirs.length);
+    }
+
+    private static int comparePrereleasePart(String a, String b) {
+        boolean aNumeric = a.chars().allMatch(Character::isDigit) && !a.isEmpty();
+        boolean bNumeric = b.chars().allMatch(Character::isDigit) && !b.isEmpty();
+        if (aNumeric && bNumeric) return Long.compare(Long.parseLong(a), Long.parseLong(b));
+        if (aNumeric) return -1;
+        if (bNumeric) return 1;
+        return a.compareTo(b);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return compareTo((SemverVersion) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(major, minor, patch, prerelease);
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch + (prerelease == null ? "" : "-" + prerelease);
+    }
+}
@@ -0,0 +1,26 @@
+package me.matoosh.repominer;
+
+/**
+ * Repo returned from a similarity query.
+ */
+public class SimilarRepo extends Repo {
+    public SimilarRepo() {
+        super();
+    }
+
+    public SimilarRepo(String id, String category, double similarity) {
+        super(id, category);
+        this.similarity = similarity;
+    }
+
+    public double similarity;
+
+    @Override
+    public String toString() {
+        return "SimilarRepo{" +
+                "id='" + id + '\'' +
+                ", category='" + category + '\'' +
+                ", similarity=" + similarity +
+                '}';
+    }
+}
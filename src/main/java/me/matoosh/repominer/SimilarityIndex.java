@@ -0,0 +1,321 @@
+package me.matoosh.repominer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory inverted index of mined repos for answering similarity queries.
+ * Uses the same AND affinity as the analysis: |A and B| / max(|A|, |B|).
+ * <p>
+ * Queries read an immutable snapshot of the index and never wait for updates.
+ * Updates run one at a time, copy only the postings they change and then publish a new snapshot.
+ */
+public class SimilarityIndex {
+    private static final int[] EMPTY = new int[0];
+    private static final Comparator<SimilarRepo> WORST_FIRST = Comparator.comparingDouble((SimilarRepo r) -> r.similarity)
+            .thenComparing(r -> r.id, Comparator.reverseOrder());
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final boolean includeTransitive;
+    private final Object updateLock = new Object();
+
+    /**
+     * Dependency id to its index in the postings, only ever grows.
+     * Indices past the postings of a snapshot belong to dependencies added after it.
+     */
+    private final ConcurrentHashMap<String, Integer> dependencyIndices = new ConcurrentHashMap<>();
+    /**
+     * Slots freed by removed repos, only used by updates.
+     */
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private volatile Snapshot snapshot = new Snapshot(new IndexedRepo[0], new HashMap<>(), new int[0][]);
+
+    /**
+     * Creates an empty index.
+     *
+     * @param includeTransitive Whether transitive dependencies count towards similarity.
+     */
+    public SimilarityIndex(boolean includeTransitive) {
+        this.includeTransitive = includeTransitive;
+    }
+
+    /**
+     * Adds all the given repos to the index, replacing already indexed ones.
+     * Queries see either none or all of the repos.
+     *
+     * @param minedRepos Repos to add.
+     */
+    public void putAll(Collection<MinedRepo> minedRepos) {
+        synchronized (updateLock) {
+            Update update = new Update(snapshot);
+            for (MinedRepo minedRepo : minedRepos) {
+                update.put(minedRepo);
+            }
+            snapshot = update.publish();
+        }
+    }
+
+    /**
+     * Adds a repo to the index, replacing it if it was already indexed.
+     *
+     * @param minedRepo Repo to add.
+     */
+    public void put(MinedRepo minedRepo) {
+        putAll(Collections.singletonList(minedRepo));
+    }
+
+    /**
+     * Removes a repo from the index.
+     *
+     * @param repoId Id of the repo to remove.
+     * @return Whether the repo was indexed.
+     */
+    public boolean remove(String repoId) {
+        synchronized (updateLock) {
+            Update update = new Update(snapshot);
+            if (!update.remove(repoId)) return false;
+            snapshot = update.publish();
+            return true;
+        }
+    }
+
+    /**
+     * Finds the most similar repos to an indexed repo.
+     *
+     * @param repoId Id of the indexed repo.
+     * @param k      Maximum number of siblings to return.
+     * @return Siblings sorted by similarity, or null if the repo is not indexed.
+     */
+    public List<SimilarRepo> topSiblings(String repoId, int k) {
+        Snapshot current = snapshot;
+        Integer slot = current.repoSlots.get(repoId);
+        if (slot == null) return null;
+        int[] dependencies = current.repos[slot].dependencies;
+        return current.topSimilar(dependencies, dependencies.length, slot, k);
+    }
+
+    /**
+     * Finds the most similar repos to an ad-hoc list of dependencies.
+     *
+     * @param dependencyIds Ids of the dependencies to compare against.
+     * @param k             Maximum number of repos to return.
+     * @return Repos sorted by similarity.
+     */
+    public List<SimilarRepo> topSimilar(Collection<String> dependencyIds, int k) {
+        Snapshot current = snapshot;
+
+        // map to known dependencies, unknown ones still count towards the size
+        Set<String> uniqueIds = new HashSet<>(dependencyIds);
+        int[] query = new int[uniqueIds.size()];
+        int known = 0;
+        for (String dependencyId : uniqueIds) {
+            Integer index = dependencyIndices.get(dependencyId);
+            if (index != null && index < current.postings.length) query[known++] = index;
+        }
+        return current.topSimilar(Arrays.copyOf(query, known), uniqueIds.size(), -1, k);
+    }
+
+    /**
+     * @return Number of indexed repos.
+     */
+    public int size() {
+        return snapshot.repoSlots.size();
+    }
+
+    /**
+     * @return Number of distinct dependencies seen by the index.
+     */
+    public int dependencyCount() {
+        return dependencyIndices.size();
+    }
+
+    /**
+     * Immutable state of the index read by queries.
+     */
+    private static class Snapshot {
+        /**
+         * Indexed repos by slot, removed repos leave a null slot.
+         */
+        final IndexedRepo[] repos;
+        /**
+         * Repo id to its slot.
+         */
+        final Map<String, Integer> repoSlots;
+        /**
+         * Repo slots containing each dependency.
+         */
+        final int[][] postings;
+
+        Snapshot(IndexedRepo[] repos, Map<String, Integer> repoSlots, int[][] postings) {
+            this.repos = repos;
+            this.repoSlots = repoSlots;
+            this.postings = postings;
+        }
+
+        List<SimilarRepo> topSimilar(int[] query, int querySize, int excludedSlot, int k) {
+            if (querySize == 0 || k <= 0) return new ArrayList<>();
+
+            // count shared dependencies with every repo sharing at least one
+            Scratch scratch = SCRATCH.get();
+            scratch.ensureCapacity(repos.length);
+            int[] overlaps = scratch.overlaps;
+            int[] touched = scratch.touched;
+            int touchedCount = 0;
+            for (int dependency : query) {
+                for (int slot : postings[dependency]) {
+                    if (overlaps[slot]++ == 0) touched[touchedCount++] = slot;
+                }
+            }
+
+            // keep the k best in a heap with the worst on top, ties broken by id
+            PriorityQueue<SimilarRepo> best = new PriorityQueue<>(WORST_FIRST);
+            for (int t = 0; t < touchedCount; t++) {
+                int slot = touched[t];
+                int overlap = overlaps[slot];
+                overlaps[slot] = 0;
+                if (slot == excludedSlot) continue;
+                IndexedRepo repo = repos[slot];
+                double similarity = (double) overlap / Math.max(querySize, repo.dependencies.length);
+                if (best.size() == k) {
+                    SimilarRepo worst = best.peek();
+                    if (similarity < worst.similarity) continue;
+                    if (similarity == worst.similarity && repo.id.compareTo(worst.id) > 0) continue;
+                    best.poll();
+                }
+                best.add(new SimilarRepo(repo.id, repo.category, similarity));
+            }
+
+            // sort best first
+            List<SimilarRepo> result = new ArrayList<>(best);
+            result.sort(WORST_FIRST.reversed());
+            return result;
+        }
+    }
+
+    /**
+     * Overlap counters reused by the queries of a thread, all zero between queries.
+     */
+    private static class Scratch {
+        int[] overlaps = EMPTY;
+        int[] touched = EMPTY;
+
+        void ensureCapacity(int slots) {
+            if (overlaps.length >= slots) return;
+            overlaps = new int[slots];
+            touched = new int[slots];
+        }
+    }
+
+    /**
+     * Changes to a snapshot, applied to copies of the parts they touch.
+     */
+    private class Update {
+        final Snapshot base;
+        final HashMap<String, Integer> repoSlots;
+        IndexedRepo[] repos;
+        /**
+         * Slots whose repo was added, replaced or removed.
+         */
+        final Set<Integer> changedSlots = new HashSet<>();
+
+        Update(Snapshot base) {
+            this.base = base;
+            this.repoSlots = new HashMap<>(base.repoSlots);
+            this.repos = base.repos.clone();
+        }
+
+        void put(MinedRepo minedRepo) {
+            // intern dependencies
+            Set<Integer> dependencies = new HashSet<>();
+            if (minedRepo.dependencies != null) {
+                for (Dependency dependency : minedRepo.dependencies) {
+                    if (dependency.id == null) continue;
+                    if (!includeTransitive && dependency.type == DependencyType.TRANSITIVE) continue;
+                    dependencies.add(dependencyIndices.computeIfAbsent(dependency.id, id -> dependencyIndices.size()));
+                }
+            }
+            int[] sorted = dependencies.stream().mapToInt(Integer::intValue).sorted().toArray();
+            IndexedRepo indexedRepo = new IndexedRepo(minedRepo.id, minedRepo.category, sorted);
+
+            // reuse the slot of a replaced repo, otherwise allocate one
+            Integer slot = repoSlots.get(minedRepo.id);
+            if (slot == null) {
+                if (freeSlots.isEmpty()) {
+                    slot = repos.length;
+                    repos = Arrays.copyOf(repos, Math.max(16, repos.length * 2));
+                    for (int free = repos.length - 1; free > slot; free--) {
+                        freeSlots.push(free);
+                    }
+                } else {
+                    slot = freeSlots.pop();
+                }
+                repoSlots.put(minedRepo.id, slot);
+            }
+            repos[slot] = indexedRepo;
+            changedSlots.add(slot);
+        }
+
+        boolean remove(String repoId) {
+            Integer slot = repoSlots.remove(repoId);
+            if (slot == null) return false;
+            repos[slot] = null;
+            freeSlots.push(slot);
+            changedSlots.add(slot);
+            return true;
+        }
+
+        Snapshot publish() {
+            // rebuild the postings of every dependency of a changed repo, before and after the change
+            HashMap<Integer, List<Integer>> changedPostings = new HashMap<>();
+            for (int slot : changedSlots) {
+                IndexedRepo before = slot < base.repos.length ? base.repos[slot] : null;
+                if (before != null) {
+                    for (int dependency : before.dependencies) {
+                        changedPostings.computeIfAbsent(dependency, d -> new ArrayList<>());
+                    }
+                }
+            }
+            for (int slot : changedSlots) {
+                if (repos[slot] == null) continue;
+                for (int dependency : repos[slot].dependencies) {
+                    changedPostings.computeIfAbsent(dependency, d -> new ArrayList<>()).add(slot);
+                }
+            }
+
+            int[][] postings = Arrays.copyOf(base.postings, dependencyIndices.size());
+            for (int dependency = base.postings.length; dependency < postings.length; dependency++) {
+                postings[dependency] = EMPTY;
+            }
+            for (Map.Entry<Integer, List<Integer>> changed : changedPostings.entrySet()) {
+                int dependency = changed.getKey();
+                List<Integer> added = changed.getValue();
+                int[] previous = postings[dependency];
+                int[] posting = new int[previous.length + added.size()];
+                int size = 0;
+                for (int slot : previous) {
+                    if (!changedSlots.contains(slot)) posting[size++] = slot;
+                }
+                for (int slot : added) {
+                    posting[size++] = slot;
+                }
+                postings[dependency] = Arrays.copyOf(posting, size);
+            }
+            return new Snapshot(repos, repoSlots, postings);
+        }
+    }
+
+    /**
+     * Repo stored in the index with interned dependencies.
+     */
+    private static class IndexedRepo {
+        final String id;
+        final String category;
+        final int[] dependencies;
+
+        IndexedRepo(String id, String category, int[] dependencies) {
+            this.id = id;
+            this.category = category;
+            this.dependencies = dependencies;
+        }
+    }
+}
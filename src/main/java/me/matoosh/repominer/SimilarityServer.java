@@ -0,0 +1,226 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP server answering similarity queries from an in-memory index.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>GET /siblings?repo=owner/name&amp;k=10 - most similar repos to an indexed repo.</li>
+ *     <li>POST /similar?k=10 - most similar repos to a JSON array of dependency ids.</li>
+ *     <li>POST /repos - adds or replaces a mined repo (or a JSON array of them).</li>
+ *     <li>GET /stats - index size and latency percentiles per endpoint.</li>
+ * </ul>
+ */
+public class SimilarityServer {
+    private static final int DEFAULT_K = 10;
+    private static final int LATENCY_WINDOW = 10000;
+
+    private final SimilarityIndex index;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+    private HttpServer server;
+
+    public SimilarityServer(SimilarityIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Starts listening on the given port.
+     *
+     * @param port Port to listen on.
+     * @throws IOException
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
+        addEndpoint("/siblings", this::handleSiblings);
+        addEndpoint("/similar", this::handleSimilar);
+        addEndpoint("/repos", this::handleRepos);
+        server.createContext("/stats", exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    respond(exchange, 405, error("Method not allowed"));
+                    return;
+                }
+                respond(exchange, 200, stats());
+            }
+        });
+        server.start();
+        System.out.println("Similarity server listening on port " + port);
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void addEndpoint(String path, Endpoint endpoint) {
+        LatencyRecorder recorder = new LatencyRecorder(LATENCY_WINDOW);
+        latencies.put(path, recorder);
+        HttpHandler handler = exchange -> {
+            long start = System.nanoTime();
+            try {
+                endpoint.handle(exchange);
+            } catch (JsonProcessingException | NumberFormatException e) {
+                respondError(exchange, 400, e);
+            } catch (Exception e) {
+                e.printStackTrace();
+                respondError(exchange, 500, e);
+            } finally {
+                exchange.close();
+                recorder.record(System.nanoTime() - start);
+            }
+        };
+        server.createContext(path, handler);
+    }
+
+    private void handleSiblings(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, error("Method not allowed"));
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange);
+        String repoId = query.get("repo");
+        if (repoId == null) {
+            respond(exchange, 400, error("Missing repo parameter"));
+            return;
+        }
+        List<SimilarRepo> siblings = index.topSiblings(repoId, getK(query));
+        if (siblings == null) {
+            respond(exchange, 404, error("Repo not indexed: " + repoId));
+            return;
+        }
+        respond(exchange, 200, siblings);
+    }
+
+    private void handleSimilar(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, error("Method not allowed"));
+            return;
+        }
+        String[] dependencyIds;
+        try (InputStream input = exchange.getRequestBody()) {
+            dependencyIds = mapper.readValue(input, String[].class);
+        }
+        if (dependencyIds == null) {
+            respond(exchange, 400, error("Expected an array of dependency ids"));
+            return;
+        }
+        respond(exchange, 200, index.topSimilar(Arrays.asList(dependencyIds), getK(parseQuery(exchange))));
+    }
+
+    private void handleRepos(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, error("Method not allowed"));
+            return;
+        }
+
+        // accept a single repo or an array of repos
+        JsonNode document;
+        try (InputStream input = exchange.getRequestBody()) {
+            document = mapper.readTree(input);
+        }
+        List<MinedRepo> minedRepos = new ArrayList<>();
+        if (document.isArray()) {
+            minedRepos.addAll(Arrays.asList(mapper.treeToValue(document, MinedRepo[].class)));
+        } else {
+            minedRepos.add(mapper.treeToValue(document, MinedRepo.class));
+        }
+        for (MinedRepo minedRepo : minedRepos) {
+            if (minedRepo == null || minedRepo.id == null) {
+                respond(exchange, 400, error("Repo without id"));
+                return;
+            }
+        }
+        index.putAll(minedRepos);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("indexed", minedRepos.size());
+        result.put("repos", index.size());
+        respond(exchange, 200, result);
+    }
+
+    private Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("repos", index.size());
+        stats.put("dependencies", index.dependencyCount());
+        Map<String, Object> latencyStats = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+            latencyStats.put(entry.getKey(), entry.getValue().summary());
+        }
+        stats.put("latencyMs", latencyStats);
+        return stats;
+    }
+
+    private int getK(Map<String, String> query) {
+        String k = query.get("k");
+        if (k == null) return DEFAULT_K;
+        return Integer.parseInt(k);
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return query;
+        for (String pair : raw.split("&")) {
+            int equalsIndex = pair.indexOf('=');
+            if (equalsIndex == -1) continue;
+            String key = URLDecoder.decode(pair.substring(0, equalsIndex), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(pair.substring(equalsIndex + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    /**
+     * Reports a failed request, unless a response was already started.
+     */
+    private void respondError(HttpExchange exchange, int status, Exception e) {
+        if (exchange.getResponseCode() != -1) return;
+        try {
+            respond(exchange, status, error(String.valueOf(e.getMessage())));
+        } catch (IOException ignored) {
+            // client is gone
+        }
+    }
+
+    private static Map<String, String> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Handles a request to a timed endpoint.
+     */
+    private interface Endpoint {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,33 @@
+package me.matoosh.repominer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes of the mined repos between two snapshots.
+ */
+public class SnapshotDelta {
+    /**
+     * Changes of new and changed repos.
+     */
+    public Map<String, RepoDelta> repos = new HashMap<>();
+    /**
+     * Ids of repos which are no longer mined.
+     */
+    public List<String> removedRepos = new ArrayList<>();
+
+    /**
+     * Changes of a single repo.
+     */
+    public static class RepoDelta {
+        public String category;
+        public List<Dependency> added = new ArrayList<>();
+        public List<String> removed = new ArrayList<>();
+        /**
+         * Dependencies whose version or type changed.
+         */
+        public List<Dependency> changed = new ArrayList<>();
+    }
+}
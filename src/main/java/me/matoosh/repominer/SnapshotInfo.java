@@ -0,0 +1,31 @@
+package me.matoosh.repominer;
+
+/**
+ * Recorded snapshot of the mined repos.
+ */
+public class SnapshotInfo {
+    public int number;
+    public long timestamp;
+    /**
+     * Whether the snapshot is stored in full instead of as a delta to the previous one.
+     */
+    public boolean checkpoint;
+
+    public SnapshotInfo() {
+    }
+
+    public SnapshotInfo(int number, long timestamp, boolean checkpoint) {
+        this.number = number;
+        this.timestamp = timestamp;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotInfo{" +
+                "number=" + number +
+                ", timestamp=" + timestamp +
+                ", checkpoint=" + checkpoint +
+                '}';
+    }
+}
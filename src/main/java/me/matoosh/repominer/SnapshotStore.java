@@ -0,0 +1,321 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * History of mined snapshots, stored as deltas to the previous snapshot with periodic full checkpoints.
+ * <p>
+ * Layout of the store directory:
+ * <ul>
+ *     <li>index.json - recorded snapshots.</li>
+ *     <li>snapshots/N.full.json.gz - checkpoint with all mined repos.</li>
+ *     <li>snapshots/N.delta.json.gz - changes since snapshot N - 1.</li>
+ *     <li>changes/XX.json - dependency changes per repo, bucketed by repo id hash.</li>
+ *     <li>recording - number of a snapshot being recorded, left behind if recording was interrupted.</li>
+ * </ul>
+ */
+public class SnapshotStore {
+    private final File dir;
+    private final int checkpointInterval;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * @param dir                Directory of the store.
+     * @param checkpointInterval Number of snapshots between full checkpoints.
+     */
+    public SnapshotStore(File dir, int checkpointInterval) {
+        this.dir = dir;
+        this.checkpointInterval = checkpointInterval;
+        new File(dir, "snapshots").mkdirs();
+        new File(dir, "changes").mkdirs();
+    }
+
+    /**
+     * @return Recorded snapshots, oldest first.
+     * @throws IOException
+     */
+    public List<SnapshotInfo> list() throws IOException {
+        File index = new File(dir, "index.json");
+        if (!index.exists()) return new ArrayList<>();
+        return new ArrayList<>(Arrays.asList(mapper.readValue(index, SnapshotInfo[].class)));
+    }
+
+    /**
+     * Records the mined repos as a new snapshot.
+     *
+     * @param repos Mined repos.
+     * @return Recorded snapshot.
+     * @throws IOException
+     */
+    public SnapshotInfo record(List<MinedRepo> repos) throws IOException {
+        List<SnapshotInfo> snapshots = list();
+        int number = snapshots.isEmpty() ? 1 : snapshots.get(snapshots.size() - 1).number + 1;
+        boolean checkpoint = (number - 1) % checkpointInterval == 0;
+        SnapshotInfo info = new SnapshotInfo(number, System.currentTimeMillis(), checkpoint);
+
+        // diff against previous snapshot
+        Map<String, MinedRepo> previous = snapshots.isEmpty() ? new HashMap<>() : toMap(reconstruct(number - 1));
+        Map<String, MinedRepo> current = toMap(repos);
+        SnapshotDelta delta = diff(previous, current);
+
+        // drop changes of an interrupted recording, then mark this one as in progress
+        File recording = new File(dir, "recording");
+        if (recording.exists()) {
+            pruneChanges(mapper.readValue(recording, Integer.class));
+        }
+        writeAtomically(recording, number);
+
+        // write snapshot
+        if (checkpoint) {
+            writeGzip(getSnapshotFile(number, true), repos);
+        } else {
+            writeGzip(getSnapshotFile(number, false), delta);
+        }
+        recordChanges(info, previous, delta);
+
+        // publish
+        snapshots.add(info);
+        writeAtomically(new File(dir, "index.json"), snapshots);
+        Files.delete(recording.toPath());
+        System.out.println("Recorded snapshot " + number + (checkpoint ? " (checkpoint)" : "")
+                + " with " + delta.repos.size() + " changed and " + delta.removedRepos.size() + " removed repos");
+        return info;
+    }
+
+    /**
+     * Reconstructs a recorded snapshot from its closest checkpoint.
+     *
+     * @param number Number of the snapshot.
+     * @return Mined repos of the snapshot.
+     * @throws IOException
+     */
+    public List<MinedRepo> reconstruct(int number) throws IOException {
+        List<SnapshotInfo> snapshots = list();
+
+        // find closest checkpoint
+        int checkpoint = -1;
+        for (SnapshotInfo snapshot : snapshots) {
+            if (snapshot.number > number) break;
+            if (snapshot.checkpoint) checkpoint = snapshot.number;
+        }
+        if (checkpoint == -1 || snapshots.stream().noneMatch(s -> s.number == number)) {
+            throw new IOException("Snapshot " + number + " was not recorded!");
+        }
+
+        // apply deltas
+        Map<String, MinedRepo> repos = toMap(Arrays.asList(readGzip(getSnapshotFile(checkpoint, true), MinedRepo[].class)));
+        for (int i = checkpoint + 1; i <= number; i++) {
+            apply(repos, readGzip(getSnapshotFile(i, false), SnapshotDelta.class));
+        }
+        return new ArrayList<>(repos.values());
+    }
+
+    /**
+     * Lists the changes of a dependency of a repo, without replaying snapshots.
+     *
+     * @param repoId       Id of the repo.
+     * @param dependencyId Id of the dependency.
+     * @return Changes of the dependency, oldest first.
+     * @throws IOException
+     */
+    public List<DependencyChange> history(String repoId, String dependencyId) throws IOException {
+        Map<String, Map<String, List<DependencyChange>>> bucket = readBucket(getBucketFile(repoId));
+        Map<String, List<DependencyChange>> repoChanges = bucket.get(repoId);
+        if (repoChanges == null || !repoChanges.containsKey(dependencyId)) return new ArrayList<>();
+        return repoChanges.get(dependencyId);
+    }
+
+    private static SnapshotDelta diff(Map<String, MinedRepo> previous, Map<String, MinedRepo> current) {
+        SnapshotDelta delta = new SnapshotDelta();
+        for (String repoId : previous.keySet()) {
+            if (!current.containsKey(repoId)) delta.removedRepos.add(repoId);
+        }
+        for (MinedRepo repo : current.values()) {
+            MinedRepo before = previous.get(repo.id);
+            Map<String, Dependency> oldDependencies = toDependencyMap(before == null ? null : before.dependencies);
+            Map<String, Dependency> newDependencies = toDependencyMap(repo.dependencies);
+
+            SnapshotDelta.RepoDelta repoDelta = new SnapshotDelta.RepoDelta();
+            repoDelta.category = repo.category;
+            for (Dependency dependency : newDependencies.values()) {
+                Dependency old = oldDependencies.get(dependency.id);
+                if (old == null) {
+                    repoDelta.added.add(dependency);
+                } else if (!Objects.equals(old.version, dependency.version) || old.type != dependency.type
+                        || !Objects.equals(old.provider, dependency.provider)) {
+                    repoDelta.changed.add(dependency);
+                }
+            }
+            for (String dependencyId : oldDependencies.keySet()) {
+                if (!newDependencies.containsKey(dependencyId)) repoDelta.removed.add(dependencyId);
+            }
+
+            boolean unchanged = repoDelta.added.isEmpty() && repoDelta.removed.isEmpty() && repoDelta.changed.isEmpty();
+            if (before == null || !unchanged || !Objects.equals(before.category, repo.category)) {
+                delta.repos.put(repo.id, repoDelta);
+            }
+        }
+        return delta;
+    }
+
+    private static void apply(Map<String, MinedRepo> repos, SnapshotDelta delta) {
+        for (String repoId : delta.removedRepos) {
+            repos.remove(repoId);
+        }
+        for (Map.Entry<String, SnapshotDelta.RepoDelta> entry : delta.repos.entrySet()) {
+            SnapshotDelta.RepoDelta repoDelta = entry.getValue();
+            MinedRepo repo = repos.computeIfAbsent(entry.getKey(), id -> new MinedRepo(id, null, new HashSet<>()));
+            repo.category = repoDelta.category;
+            if (repo.dependencies == null) repo.dependencies = new HashSet<>();
+
+            // dependencies are equal by id, so changed ones replace the old entry
+            repo.dependencies.removeIf(d -> repoDelta.removed.contains(d.id));
+            for (Dependency dependency : repoDelta.changed) {
+                repo.dependencies.remove(dependency);
+                repo.dependencies.add(dependency);
+            }
+            repo.dependencies.addAll(repoDelta.added);
+        }
+    }
+
+    /**
+     * Adds the changes of a snapshot to the per-repo change index.
+     */
+    private void recordChanges(SnapshotInfo info, Map<String, MinedRepo> previous, SnapshotDelta delta) throws IOException {
+        // group changes by bucket
+        Map<File, Map<String, Map<String, DependencyChange>>> changesByBucket = new HashMap<>();
+        for (String repoId : delta.removedRepos) {
+            Map<String, DependencyChange> changes = getChanges(changesByBucket, repoId);
+            for (Dependency dependency : toDependencyMap(previous.get(repoId).dependencies).values()) {
+                changes.put(dependency.id, new DependencyChange(info.number, info.timestamp, DependencyChange.Type.REMOVED, dependency.version));
+            }
+        }
+        for (Map.Entry<String, SnapshotDelta.RepoDelta> entry : delta.repos.entrySet()) {
+            SnapshotDelta.RepoDelta repoDelta = entry.getValue();
+            MinedRepo before = previous.get(entry.getKey());
+            Map<String, Dependency> oldDependencies = toDependencyMap(before == null ? null : before.dependencies);
+            Map<String, DependencyChange> changes = getChanges(changesByBucket, entry.getKey());
+            for (Dependency dependency : repoDelta.added) {
+                changes.put(dependency.id, new DependencyChange(info.number, info.timestamp, DependencyChange.Type.ADDED, dependency.version));
+            }
+            for (Dependency dependency : repoDelta.changed) {
+                changes.put(dependency.id, new DependencyChange(info.number, info.timestamp, DependencyChange.Type.CHANGED, dependency.version));
+            }
+            for (String dependencyId : repoDelta.removed) {
+                changes.put(dependencyId, new DependencyChange(info.number, info.timestamp, DependencyChange.Type.REMOVED, oldDependencies.get(dependencyId).version));
+            }
+        }
+
+        // update touched buckets
+        for (Map.Entry<File, Map<String, Map<String, DependencyChange>>> bucketChanges : changesByBucket.entrySet()) {
+            Map<String, Map<String, List<DependencyChange>>> bucket = readBucket(bucketChanges.getKey());
+            for (Map.Entry<String, Map<String, DependencyChange>> repoChanges : bucketChanges.getValue().entrySet()) {
+                Map<String, List<DependencyChange>> repoHistory = bucket.computeIfAbsent(repoChanges.getKey(), id -> new HashMap<>());
+                for (Map.Entry<String, DependencyChange> change : repoChanges.getValue().entrySet()) {
+                    repoHistory.computeIfAbsent(change.getKey(), id -> new ArrayList<>()).add(change.getValue());
+                }
+            }
+            writeAtomically(bucketChanges.getKey(), bucket);
+        }
+    }
+
+    /**
+     * Removes the changes of the given and later snapshots from all buckets.
+     */
+    private void pruneChanges(int number) throws IOException {
+        File[] buckets = new File(dir, "changes").listFiles((d, name) -> name.endsWith(".json"));
+        if (buckets == null) return;
+        for (File file : buckets) {
+            Map<String, Map<String, List<DependencyChange>>> bucket = readBucket(file);
+            boolean pruned = false;
+            for (Map<String, List<DependencyChange>> repoHistory : bucket.values()) {
+                for (List<DependencyChange> dependencyHistory : repoHistory.values()) {
+                    pruned |= dependencyHistory.removeIf(c -> c.snapshot >= number);
+                }
+                pruned |= repoHistory.values().removeIf(List::isEmpty);
+            }
+            pruned |= bucket.values().removeIf(Map::isEmpty);
+            if (pruned) writeAtomically(file, bucket);
+        }
+    }
+
+    private Map<String, DependencyChange> getChanges(Map<File, Map<String, Map<String, DependencyChange>>> changesByBucket, String repoId) {
+        return changesByBucket.computeIfAbsent(getBucketFile(repoId), file -> new HashMap<>())
+                .computeIfAbsent(repoId, id -> new HashMap<>());
+    }
+
+    private Map<String, Map<String, List<DependencyChange>>> readBucket(File file) throws IOException {
+        if (!file.exists()) return new HashMap<>();
+        return mapper.readValue(file, ChangeBucket.class);
+    }
+
+    private File getBucketFile(String repoId) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(repoId.getBytes(StandardCharsets.UTF_8));
+            return new File(new File(dir, "changes"), String.format("%02x", hash[0]) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File getSnapshotFile(int number, boolean checkpoint) {
+        return new File(new File(dir, "snapshots"), number + (checkpoint ? ".full" : ".delta") + ".json.gz");
+    }
+
+    private static Map<String, MinedRepo> toMap(List<MinedRepo> repos) {
+        Map<String, MinedRepo> map = new HashMap<>();
+        for (MinedRepo repo : repos) {
+            Set<Dependency> dependencies = repo.dependencies == null ? new HashSet<>() : new HashSet<>(repo.dependencies);
+            map.put(repo.id, new MinedRepo(repo.id, repo.category, dependencies));
+        }
+        return map;
+    }
+
+    private static Map<String, Dependency> toDependencyMap(Set<Dependency> dependencies) {
+        Map<String, Dependency> map = new HashMap<>();
+        if (dependencies == null) return map;
+        for (Dependency dependency : dependencies) {
+            map.put(dependency.id, dependency);
+        }
+        return map;
+    }
+
+    private void writeGzip(File file, Object value) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))) {
+            mapper.writeValue(output, value);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private <T> T readGzip(File file, Class<T> type) throws IOException {
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+            return mapper.readValue(input, type);
+        }
+    }
+
+    private void writeAtomically(File file, Object value) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        mapper.writeValue(tmp, value);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Dependency changes of the repos in a bucket, by repo id and dependency id.
+     */
+    private static class ChangeBucket extends HashMap<String, Map<String, List<DependencyChange>>> {
+    }
+}
@@ -0,0 +1,148 @@
+package me.matoosh.repominer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Resolves the transitive dependencies of direct npm or pub.dev dependencies.
+ * Each version range is resolved to the highest matching published version, like a fresh install would.
+ * The dependency graph is walked level by level, fetching the metadata of each level in parallel.
+ */
+public class TransitiveResolver {
+    private final String provider;
+    private final SemverRange.Dialect dialect;
+    private final RegistrySource source;
+    private final ExecutorService executor;
+    /**
+     * Resolved version of each package and range, shared between repos.
+     */
+    private final ConcurrentHashMap<String, Optional<String>> resolvedRanges = new ConcurrentHashMap<>();
+
+    /**
+     * @param provider Provider of the resolved dependencies, e.g. npm.
+     * @param dialect  Version range rules of the provider.
+     * @param source   Source of package metadata.
+     * @param threads  Number of packages fetched in parallel.
+     */
+    public TransitiveResolver(String provider, SemverRange.Dialect dialect, RegistrySource source, int threads) {
+        this.provider = provider;
+        this.dialect = dialect;
+        this.source = source;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, provider + "-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Resolves the transitive dependencies of the given direct dependencies.
+     * Packages whose metadata can not be fetched are skipped and mark the resolution incomplete.
+     *
+     * @param direct Direct dependencies with version ranges.
+     * @return Transitive dependencies not already among the direct ones, with resolved versions.
+     */
+    public Resolution resolve(Set<Dependency> direct) {
+        Set<String> directNames = new HashSet<>();
+        List<String[]> frontier = new ArrayList<>();
+        for (Dependency dependency : direct) {
+            directNames.add(dependency.id);
+            frontier.add(new String[]{dependency.id, dependency.version});
+        }
+
+        Set<String> visited = new HashSet<>();
+        Map<String, String> transitive = new HashMap<>();
+        boolean complete = true;
+        while (!frontier.isEmpty()) {
+            // fetch the level in parallel
+            Map<String, Future<PackageMetadata>> metadata = new HashMap<>();
+            for (String[] pending : frontier) {
+                metadata.computeIfAbsent(pending[0], name -> executor.submit(() -> source.fetch(name)));
+            }
+
+            // resolve the level and collect the next one
+            List<String[]> next = new ArrayList<>();
+            for (String[] pending : frontier) {
+                String name = pending[0];
+                PackageMetadata packageMetadata;
+                try {
+                    packageMetadata = get(name, metadata.get(name));
+                } catch (IOException e) {
+                    System.out.println(e.getMessage() + ": " + e.getCause());
+                    complete = false;
+                    continue;
+                }
+                if (packageMetadata == null) continue;
+                String version = resolveVersion(name, packageMetadata, pending[1]);
+                if (version == null || !visited.add(name + "@" + version)) continue;
+
+                if (!directNames.contains(name)) {
+                    transitive.putIfAbsent(name, version);
+                }
+                Map<String, String> dependencies = packageMetadata.versions.get(version);
+                if (dependencies == null) continue;
+                for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+                    next.add(new String[]{dependency.getKey(), dependency.getValue()});
+                }
+            }
+            frontier = next;
+        }
+
+        Set<Dependency> dependencies = new HashSet<>();
+        for (Map.Entry<String, String> dependency : transitive.entrySet()) {
+            dependencies.add(new Dependency(provider, dependency.getKey(), dependency.getValue(), DependencyType.TRANSITIVE));
+        }
+        return new Resolution(dependencies, complete);
+    }
+
+    /**
+     * Stops the fetching threads.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    private String resolveVersion(String name, PackageMetadata metadata, String range) {
+        return resolvedRanges.computeIfAbsent(name + "@" + range, key -> {
+            SemverRange parsed = SemverRange.parse(range, dialect);
+            if (parsed == null) return Optional.empty();
+            return Optional.ofNullable(parsed.maxSatisfying(metadata.versions.keySet()));
+        }).orElse(null);
+    }
+
+    /**
+     * @return Metadata of the package or null if it does not exist.
+     * @throws IOException If the metadata could not be fetched.
+     */
+    private static PackageMetadata get(String name, Future<PackageMetadata> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching metadata of " + name, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to fetch metadata of " + name, e.getCause());
+        }
+    }
+
+    /**
+     * Transitive dependencies found by a resolution.
+     */
+    public static class Resolution {
+        public final Set<Dependency> dependencies;
+        /**
+         * Whether the metadata of every package was available, so no part of the dependency graph is missing.
+         */
+        public final boolean complete;
+
+        public Resolution(Set<Dependency> dependencies, boolean complete) {
+            this.dependencies = dependencies;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package me.matoosh.repominer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Builds the dependency vocabulary of a corpus in two streaming passes.
+ * <p>
+ * The first pass counts repos per dependency in a count-min sketch and collects every dependency
+ * whose estimate reaches the threshold. Since the sketch never undercounts no frequent dependency is missed.
+ * The second pass counts only those candidates exactly and drops the false positives,
+ * so memory stays bounded by the sketch and the vocabulary instead of all dependencies.
+ */
+public class VocabularyBuilder {
+    private final int minRepos;
+    private final boolean includeTransitive;
+    private final int sketchWidth;
+    private final int sketchDepth;
+
+    /**
+     * @param minRepos          Minimum number of repos using a dependency, 2 drops single repo dependencies.
+     * @param includeTransitive Whether to count transitive dependencies.
+     * @param sketchWidth       Counters per sketch row.
+     * @param sketchDepth       Number of sketch rows.
+     */
+    public VocabularyBuilder(int minRepos, boolean includeTransitive, int sketchWidth, int sketchDepth) {
+        this.minRepos = minRepos;
+        this.includeTransitive = includeTransitive;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+    }
+
+    /**
+     * Builds the vocabulary of the given mined repo files.
+     *
+     * @param reader Reader to stream the repos with.
+     * @param inputs Files or directories of mined repos.
+     * @return Vocabulary sorted by dependency id, with smoothed IDF weights.
+     * @throws IOException
+     */
+    public List<VocabularyEntry> build(MinedRepoReader reader, List<File> inputs) throws IOException {
+        // find candidates
+        System.out.println("Counting dependencies...");
+        CountMinSketch sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        Set<String> candidates = new HashSet<>();
+        int[] repoCount = {0};
+        reader.read(inputs, repo -> {
+            repoCount[0]++;
+            for (String dependencyId : repo.analysisDependencyIds(includeTransitive)) {
+                if (sketch.add(dependencyId) >= minRepos) {
+                    candidates.add(dependencyId);
+                }
+            }
+        });
+        System.out.println("Found " + candidates.size() + " candidate dependencies in " + repoCount[0] + " repos");
+
+        // count candidates exactly
+        HashMap<String, Integer> counts = new HashMap<>();
+        reader.read(inputs, repo -> {
+            for (String dependencyId : repo.analysisDependencyIds(includeTransitive)) {
+                if (candidates.contains(dependencyId)) {
+                    counts.merge(dependencyId, 1, Integer::sum);
+                }
+            }
+        });
+
+        // keep frequent dependencies
+        List<VocabularyEntry> vocabulary = new ArrayList<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            int repos = count.getValue();
+            if (repos < minRepos) continue;
+            double idf = Math.log((1.0 + repoCount[0]) / (1.0 + repos)) + 1.0;
+            vocabulary.add(new VocabularyEntry(count.getKey(), repos, idf));
+        }
+        vocabulary.sort(Comparator.comparing(e -> e.id));
+        System.out.println("Kept " + vocabulary.size() + " dependencies used by at least " + minRepos + " repos");
+        return vocabulary;
+    }
+}
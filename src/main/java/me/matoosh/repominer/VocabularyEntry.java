@@ -0,0 +1,28 @@
+package me.matoosh.repominer;
+
+/**
+ * Dependency kept in the vocabulary used to vectorize repos.
+ */
+public class VocabularyEntry {
+    public String id;
+    public int repos;
+    public double idf;
+
+    public VocabularyEntry() {
+    }
+
+    public VocabularyEntry(String id, int repos, double idf) {
+        this.id = id;
+        this.repos = repos;
+        this.idf = idf;
+    }
+
+    @Override
+    public String toString() {
+        return "VocabularyEntry{" +
+                "id='" + id + '\'' +
+                ", repos=" + repos +
+                ", idf=" + idf +
+                '}';
+    }
+}
@@ -0,0 +1,159 @@
+package me.matoosh.repominer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllPairsSimilarityTest {
+    private static final String[] EXTENSIONS = {".ids", ".indptr", ".indices", ".values", ".progress", ".meta"};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesBruteForce() throws IOException {
+        int[][] vectors = randomVectors(300, 40, 8, 1);
+        String output = dir.resolve("affinity").toString();
+        new AllPairsSimilarity(64, 16, 0.2, 0).compute(ids(vectors.length), vectors, output);
+
+        Map<Integer, Float>[] rows = readRows(output, vectors.length);
+        for (int row = 0; row < vectors.length; row++) {
+            assertEquals(bruteForceRow(vectors, row, 0.2), rows[row], "row " + row);
+        }
+    }
+
+    @Test
+    void keepsTopKWithTiesBrokenByColumn() throws IOException {
+        int[][] vectors = {{0, 1}, {0, 1}, {0}, {1}, {0, 1}};
+        String output = dir.resolve("affinity").toString();
+        new AllPairsSimilarity(2, 2, 0.0, 2).compute(ids(vectors.length), vectors, output);
+
+        Map<Integer, Float>[] rows = readRows(output, vectors.length);
+        assertEquals(Map.of(1, 1f, 4, 1f), rows[0]);
+        assertEquals(Map.of(0, 0.5f, 1, 0.5f), rows[2]);
+    }
+
+    @Test
+    void resumesInterruptedRun() throws IOException {
+        int[][] vectors = randomVectors(200, 30, 6, 2);
+        String output = dir.resolve("affinity").toString();
+        AllPairsSimilarity allPairs = new AllPairsSimilarity(32, 8, 0.1, 0);
+        allPairs.compute(ids(vectors.length), vectors, output);
+        byte[] indices = Files.readAllBytes(Path.of(output + ".indices"));
+        byte[] values = Files.readAllBytes(Path.of(output + ".values"));
+
+        // roll back to an earlier chunk, leaving the later entries behind
+        Files.writeString(Path.of(output + ".progress"), "104");
+        allPairs.compute(ids(vectors.length), vectors, output);
+        assertArrayEquals(indices, Files.readAllBytes(Path.of(output + ".indices")));
+        assertArrayEquals(values, Files.readAllBytes(Path.of(output + ".values")));
+    }
+
+    @Test
+    void restartsRunWithOtherParameters() throws IOException {
+        int[][] vectors = randomVectors(150, 30, 6, 3);
+        String output = dir.resolve("affinity").toString();
+        new AllPairsSimilarity(32, 8, 0.5, 0).compute(ids(vectors.length), vectors, output);
+        new AllPairsSimilarity(32, 8, 0.2, 0).compute(ids(vectors.length), vectors, output);
+
+        String fresh = dir.resolve("fresh").toString();
+        new AllPairsSimilarity(32, 8, 0.2, 0).compute(ids(vectors.length), vectors, fresh);
+        for (String extension : new String[]{".indptr", ".indices", ".values"}) {
+            assertArrayEquals(Files.readAllBytes(Path.of(fresh + extension)), Files.readAllBytes(Path.of(output + extension)));
+        }
+    }
+
+    @Test
+    void writesEmptyMatrixAboveAllSimilarities() throws IOException {
+        int[][] vectors = {{0}, {1}, {}};
+        String output = dir.resolve("affinity").toString();
+        new AllPairsSimilarity(2, 2, 0.5, 0).compute(ids(vectors.length), vectors, output);
+        assertEquals(0, Files.size(Path.of(output + ".indices")));
+        assertEquals(0, Files.size(Path.of(output + ".values")));
+        for (String extension : EXTENSIONS) {
+            assertTrue(Files.exists(Path.of(output + extension)), extension);
+        }
+    }
+
+    @Test
+    void vectorizesOnlyGroupArtifactIds() {
+        List<MinedRepo> repos = List.of(
+                new MinedRepo("a", "c", new HashSet<>(List.of(
+                        new Dependency("npm", "left-pad", "1.0.0", DependencyType.DIRECT),
+                        new Dependency("maven", "org:lib", "1.0", DependencyType.DIRECT),
+                        new Dependency("maven", "org:transitive", "1.0", DependencyType.TRANSITIVE)))),
+                new MinedRepo("b", "c", new HashSet<>(List.of(
+                        new Dependency("maven", "org:lib", "1.0", DependencyType.DIRECT)))));
+
+        assertArrayEquals(new int[][]{{0, 1}, {0}}, AllPairsSimilarity.vectorize(repos, true, true));
+        assertArrayEquals(new int[][]{{0}, {0}}, AllPairsSimilarity.vectorize(repos, false, true));
+        assertArrayEquals(new int[][]{{0}, {0}}, AllPairsSimilarity.vectorize(repos, true, false));
+    }
+
+    private static List<String> ids(int n) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ids.add("owner/repo-" + i);
+        }
+        return ids;
+    }
+
+    private static int[][] randomVectors(int n, int dimensions, int maxSize, long seed) {
+        Random random = new Random(seed);
+        int[][] vectors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            TreeSet<Integer> dependencies = new TreeSet<>();
+            int size = random.nextInt(maxSize + 1);
+            for (int j = 0; j < size; j++) {
+                dependencies.add(random.nextInt(dimensions));
+            }
+            vectors[i] = dependencies.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return vectors;
+    }
+
+    private static Map<Integer, Float> bruteForceRow(int[][] vectors, int row, double threshold) {
+        Map<Integer, Float> expected = new HashMap<>();
+        Set<Integer> dependencies = new HashSet<>();
+        for (int dependency : vectors[row]) dependencies.add(dependency);
+        for (int column = 0; column < vectors.length; column++) {
+            if (column == row) continue;
+            int overlap = 0;
+            for (int dependency : vectors[column]) {
+                if (dependencies.contains(dependency)) overlap++;
+            }
+            double similarity = (double) overlap / Math.max(vectors[row].length, vectors[column].length);
+            if (overlap > 0 && similarity >= threshold) expected.put(column, (float) similarity);
+        }
+        return expected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Float>[] readRows(String output, int n) throws IOException {
+        ByteBuffer indptr = ByteBuffer.wrap(Files.readAllBytes(Path.of(output + ".indptr"))).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer indices = ByteBuffer.wrap(Files.readAllBytes(Path.of(output + ".indices"))).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer values = ByteBuffer.wrap(Files.readAllBytes(Path.of(output + ".values"))).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(indptr.getLong(n * 8), indices.capacity() / 8);
+
+        Map<Integer, Float>[] rows = new Map[n];
+        for (int row = 0; row < n; row++) {
+            rows[row] = new HashMap<>();
+            long previousColumn = -1;
+            for (long entry = indptr.getLong(row * 8); entry < indptr.getLong((row + 1) * 8); entry++) {
+                long column = indices.getLong((int) entry * 8);
+                assertTrue(column > previousColumn, "columns sorted");
+                previousColumn = column;
+                rows[row].put((int) column, values.getFloat((int) entry * 4));
+            }
+        }
+        return rows;
+    }
+}
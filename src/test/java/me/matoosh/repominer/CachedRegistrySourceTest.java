@@ -0,0 +1,45 @@
+package me.matoosh.repominer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedRegistrySourceTest {
+    @TempDir
+    File cacheDir;
+
+    @Test
+    void persistsFetchedAndMissingPackages() throws IOException {
+        AtomicInteger fetches = new AtomicInteger();
+        RegistrySource upstream = name -> {
+            fetches.incrementAndGet();
+            if (name.equals("@private/missing")) return null;
+            PackageMetadata metadata = new PackageMetadata(name);
+            metadata.versions.put("1.0.0", Map.of("dependency", "^2.0.0"));
+            return metadata;
+        };
+        CachedRegistrySource first = new CachedRegistrySource(upstream, cacheDir);
+        assertNotNull(first.fetch("left-pad"));
+        assertNotNull(first.fetch("left-pad"));
+        assertNull(first.fetch("@private/missing"));
+        assertEquals(2, fetches.get());
+
+        // a later run only reads the disk
+        CachedRegistrySource second = new CachedRegistrySource(upstream, cacheDir);
+        assertEquals("^2.0.0", second.fetch("left-pad").versions.get("1.0.0").get("dependency"));
+        assertNull(second.fetch("@private/missing"));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void offlineCacheMissFails() {
+        CachedRegistrySource offline = new CachedRegistrySource(null, cacheDir);
+        assertThrows(IOException.class, () -> offline.fetch("left-pad"));
+    }
+}
@@ -0,0 +1,71 @@
+package me.matoosh.repominer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinedRepoReaderTest {
+    private static final String REPO_A = "{\"id\":\"o/a\",\"category\":\"mc-plugin\",\"dependencies\":"
+            + "[{\"provider\":\"maven\",\"id\":\"g:x\",\"version\":\"1\",\"type\":\"DIRECT\"}]}";
+    private static final String REPO_B = "{\"id\":\"o/b\",\"category\":\"mc-mod\",\"dependencies\":[]}";
+
+    @TempDir
+    File dir;
+
+    private List<String> readIds(List<File> inputs) throws IOException {
+        List<String> ids = new ArrayList<>();
+        new MinedRepoReader().read(inputs, repo -> ids.add(repo.id));
+        return ids;
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(dir, name);
+        Files.writeString(file.toPath(), content);
+        return file;
+    }
+
+    @Test
+    void readsJsonArray() throws IOException {
+        File file = write("mined.json", "[" + REPO_A + ",\n" + REPO_B + "]");
+        List<MinedRepo> repos = new ArrayList<>();
+        new MinedRepoReader().read(file, repos::add);
+
+        assertEquals(2, repos.size());
+        assertEquals("o/a", repos.get(0).id);
+        assertEquals("mc-plugin", repos.get(0).category);
+        assertEquals(DependencyType.DIRECT, repos.get(0).dependencies.iterator().next().type);
+        assertTrue(repos.get(1).dependencies.isEmpty());
+    }
+
+    @Test
+    void readsOneRepoPerLine() throws IOException {
+        File file = write("mined.jsonl", REPO_A + "\n" + REPO_B + "\n");
+        assertEquals(List.of("o/a", "o/b"), readIds(List.of(file)));
+    }
+
+    @Test
+    void readsEmptyFiles() throws IOException {
+        assertEquals(List.of(), readIds(List.of(write("empty.json", ""))));
+        assertEquals(List.of(), readIds(List.of(write("blank.json", "\n"))));
+        assertEquals(List.of(), readIds(List.of(write("array.json", "[ ]"))));
+    }
+
+    @Test
+    void readsDirectoryOfShardsInNameOrder() throws IOException {
+        File shards = new File(dir, "shards");
+        shards.mkdirs();
+        Files.writeString(new File(shards, "b.jsonl").toPath(), REPO_B + "\n");
+        Files.writeString(new File(shards, "a.json").toPath(), "[" + REPO_A + "]");
+        Files.writeString(new File(shards, "c.json").toPath(), "[]");
+        Files.writeString(new File(shards, ".hidden").toPath(), "not json");
+
+        assertEquals(List.of("o/a", "o/b"), readIds(List.of(shards)));
+    }
+}
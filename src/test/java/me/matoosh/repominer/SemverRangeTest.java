@@ -0,0 +1,76 @@
+package me.matoosh.repominer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemverRangeTest {
+    private static final List<String> VERSIONS = List.of(
+            "0.0.3", "0.0.4", "0.0.9", "0.1.0", "0.1.5", "0.2.0",
+            "1.0.0-beta.1", "1.0.0", "1.2.0", "1.2.7", "1.3.0", "1.9.9", "2.0.0-rc.1", "2.0.0", "3.1.0"
+    );
+
+    private static String max(String range) {
+        return SemverRange.parse(range).maxSatisfying(VERSIONS);
+    }
+
+    private static boolean satisfies(String range, String version) {
+        return SemverRange.parse(range).satisfies(SemverVersion.parse(version));
+    }
+
+    @Test
+    void resolvesHighestMatchingVersion() {
+        assertEquals("1.9.9", max("^1.0.0"));
+        assertEquals("1.2.7", max("~1.2.0"));
+        assertEquals("1.9.9", max("1.x"));
+        assertEquals("1.2.7", max("1.2"));
+        assertEquals("1.3.0", max(">=1.0.0 <1.9.0"));
+        assertEquals("1.9.9", max("1.0.0 - 1.9.9"));
+        assertEquals("3.1.0", max("^1.0.0 || ^3.0.0"));
+        assertEquals("3.1.0", max("*"));
+        assertEquals("1.2.0", max("1.2.0"));
+        assertNull(max("^4.0.0"));
+    }
+
+    @Test
+    void npmCaretBelowOneOnlyAllowsPatchesOfZeroMinor() {
+        assertEquals("0.0.3", max("^0.0.3"));
+        assertEquals("0.1.5", max("^0.1.0"));
+    }
+
+    @Test
+    void pubCaretBelowOneAllowsMinorUpdates() {
+        assertEquals("0.0.9", SemverRange.parse("^0.0.3", SemverRange.Dialect.PUB).maxSatisfying(VERSIONS));
+        assertEquals("0.1.5", SemverRange.parse("^0.1.0", SemverRange.Dialect.PUB).maxSatisfying(VERSIONS));
+        assertEquals("1.9.9", SemverRange.parse("^1.0.0", SemverRange.Dialect.PUB).maxSatisfying(VERSIONS));
+    }
+
+    @Test
+    void prereleasesOnlyMatchWhenNamedInTheRange() {
+        assertFalse(satisfies("^1.0.0", "2.0.0-rc.1"));
+        assertFalse(satisfies("<2.0.0", "2.0.0-rc.1"));
+        assertFalse(satisfies("1.x", "1.0.0-beta.1"));
+        assertTrue(satisfies(">=1.0.0-beta.1", "1.0.0-beta.2"));
+        assertFalse(satisfies(">=1.0.0-beta.1", "1.0.1-beta.1"));
+        assertTrue(satisfies("^2.0.0-rc.1", "2.0.0-rc.1"));
+    }
+
+    @Test
+    void nonVersionRangesAreNotParsed() {
+        assertNull(SemverRange.parse("git+https://github.com/owner/repo.git"));
+        assertNull(SemverRange.parse("file:../local"));
+        assertNull(SemverRange.parse("owner/repo"));
+        assertNotNull(SemverRange.parse("latest"));
+    }
+
+    @Test
+    void ordersPrereleasesBeforeTheirRelease() {
+        assertTrue(SemverVersion.parse("1.0.0-alpha").compareTo(SemverVersion.parse("1.0.0-alpha.1")) < 0);
+        assertTrue(SemverVersion.parse("1.0.0-alpha.1").compareTo(SemverVersion.parse("1.0.0-beta")) < 0);
+        assertTrue(SemverVersion.parse("1.0.0-beta.2").compareTo(SemverVersion.parse("1.0.0-beta.11")) < 0);
+        assertTrue(SemverVersion.parse("1.0.0-rc.1").compareTo(SemverVersion.parse("1.0.0")) < 0);
+        assertEquals(SemverVersion.parse("v1.2.3+build.5"), SemverVersion.parse("1.2.3"));
+    }
+}
@@ -0,0 +1,105 @@
+package me.matoosh.repominer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+    @TempDir
+    File dir;
+
+    private static MinedRepo repo(String id, String... dependencies) {
+        Set<Dependency> mined = new HashSet<>();
+        for (String dependency : dependencies) {
+            String[] idAndVersion = dependency.split("@");
+            mined.add(new Dependency("maven", idAndVersion[0], idAndVersion[1], DependencyType.DIRECT));
+        }
+        return new MinedRepo(id, "mc-plugin", mined);
+    }
+
+    /**
+     * Maps repos to their dependency ids and versions, for comparing snapshots.
+     */
+    private static Map<String, Map<String, String>> contents(List<MinedRepo> repos) {
+        Map<String, Map<String, String>> contents = new HashMap<>();
+        for (MinedRepo repo : repos) {
+            Map<String, String> dependencies = new HashMap<>();
+            for (Dependency dependency : repo.dependencies) {
+                dependencies.put(dependency.id, dependency.version);
+            }
+            contents.put(repo.id, dependencies);
+        }
+        return contents;
+    }
+
+    @Test
+    void reconstructsEverySnapshot() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, 2);
+        List<List<MinedRepo>> recorded = List.of(
+                List.of(repo("o/a", "g:x@1", "g:y@1"), repo("o/b", "g:x@1")),
+                List.of(repo("o/a", "g:x@2", "g:y@1"), repo("o/b", "g:x@1"), repo("o/c", "g:z@1")),
+                List.of(repo("o/a", "g:x@2"), repo("o/c", "g:z@1")),
+                List.of(repo("o/a", "g:x@3", "g:w@1"), repo("o/c", "g:z@1"))
+        );
+        for (List<MinedRepo> repos : recorded) {
+            store.record(repos);
+        }
+
+        List<SnapshotInfo> snapshots = store.list();
+        assertEquals(4, snapshots.size());
+        assertTrue(snapshots.get(0).checkpoint);
+        assertFalse(snapshots.get(1).checkpoint);
+        assertTrue(snapshots.get(2).checkpoint);
+        for (int i = 0; i < recorded.size(); i++) {
+            assertEquals(contents(recorded.get(i)), contents(store.reconstruct(i + 1)), "snapshot " + (i + 1));
+        }
+        assertThrows(IOException.class, () -> store.reconstruct(5));
+    }
+
+    @Test
+    void listsDependencyChanges() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, 30);
+        store.record(List.of(repo("o/a", "g:x@1")));
+        store.record(List.of(repo("o/a", "g:x@1", "g:y@1")));
+        store.record(List.of(repo("o/a", "g:x@2", "g:y@1")));
+        store.record(List.of(repo("o/a", "g:y@1")));
+
+        List<DependencyChange> changes = store.history("o/a", "g:x");
+        assertEquals(3, changes.size());
+        assertEquals(1, changes.get(0).snapshot);
+        assertEquals(DependencyChange.Type.ADDED, changes.get(0).change);
+        assertEquals(3, changes.get(1).snapshot);
+        assertEquals(DependencyChange.Type.CHANGED, changes.get(1).change);
+        assertEquals("2", changes.get(1).version);
+        assertEquals(4, changes.get(2).snapshot);
+        assertEquals(DependencyChange.Type.REMOVED, changes.get(2).change);
+
+        assertEquals(1, store.history("o/a", "g:y").size());
+        assertTrue(store.history("o/a", "g:unknown").isEmpty());
+        assertTrue(store.history("o/unknown", "g:x").isEmpty());
+    }
+
+    @Test
+    void prunesChangesOfInterruptedRecording() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir, 30);
+        store.record(List.of(repo("o/a", "g:x@1")));
+        byte[] index = Files.readAllBytes(new File(dir, "index.json").toPath());
+
+        // record snapshot 2, then roll back as if it crashed before publishing the index
+        store.record(List.of(repo("o/a", "g:x@1", "g:phantom@1")));
+        Files.write(new File(dir, "index.json").toPath(), index);
+        Files.writeString(new File(dir, "recording").toPath(), "2");
+
+        store.record(List.of(repo("o/a", "g:x@1", "g:y@1")));
+        assertTrue(store.history("o/a", "g:phantom").isEmpty());
+        assertEquals(2, store.history("o/a", "g:y").get(0).snapshot);
+        assertEquals(1, store.history("o/a", "g:x").size());
+        assertFalse(new File(dir, "recording").exists());
+    }
+}
@@ -0,0 +1,46 @@
+package me.matoosh.repominer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VocabularyBuilderTest {
+    @TempDir
+    File dir;
+
+    private static MinedRepo repo(String id, Dependency... dependencies) {
+        return new MinedRepo(id, "mc-plugin", new HashSet<>(List.of(dependencies)));
+    }
+
+    @Test
+    void keepsGroupArtifactIdsUsedByEnoughRepos() throws IOException {
+        Dependency shared = new Dependency("maven", "org:shared", "1.0", DependencyType.DIRECT);
+        Dependency transitive = new Dependency("maven", "org:transitive", "1.0", DependencyType.TRANSITIVE);
+        Dependency npm = new Dependency("npm", "left-pad", "1.3.0", DependencyType.DIRECT);
+        Dependency single = new Dependency("maven", "org:single", "1.0", DependencyType.DIRECT);
+        File input = new File(dir, "mined.json");
+        new ObjectMapper().writeValue(input, List.of(
+                repo("o/a", shared, transitive, npm, single),
+                repo("o/b", shared, transitive, npm),
+                repo("o/c", npm)));
+        MinedRepoReader reader = new MinedRepoReader();
+
+        List<VocabularyEntry> vocabulary = new VocabularyBuilder(2, true, 1024, 4).build(reader, List.of(input));
+        assertEquals(2, vocabulary.size());
+        assertEquals("org:shared", vocabulary.get(0).id);
+        assertEquals(2, vocabulary.get(0).repos);
+        assertEquals(Math.log(4.0 / 3.0) + 1.0, vocabulary.get(0).idf, 1e-9);
+        assertEquals("org:transitive", vocabulary.get(1).id);
+
+        List<VocabularyEntry> direct = new VocabularyBuilder(2, false, 1024, 4).build(reader, List.of(input));
+        assertEquals(1, direct.size());
+        assertEquals("org:shared", direct.get(0).id);
+    }
+}